@@ -0,0 +1,27 @@
+package org.mrgeo.plugins;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the standard JMH main does, but always with the gc profiler, so the
+ * allocation rate is reported next to the throughput.
+ */
+public class Benchmarks
+{
+  public static void main(String[] args) throws Exception
+  {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams() ||
+        options.shouldListProfilers() || options.shouldListResultFormats())
+    {
+      Main.main(args);
+      return;
+    }
+
+    new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+  }
+}
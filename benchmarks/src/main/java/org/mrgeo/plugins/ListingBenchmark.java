@@ -0,0 +1,149 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the list-dependencies output in each format, to a channel that throws the bytes away so only
+ * the formatting and encoding is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark
+{
+  @Param({"4", "8"})
+  public int breadth;
+
+  @Param({"5"})
+  public int depth;
+
+  @Param({"0.5"})
+  public double duplication;
+
+  private List<ArtifactRecord> artifacts;
+  private Model model;
+  private Log log;
+
+  @Setup
+  public void setup()
+  {
+    artifacts = SyntheticGraph.artifacts(SyntheticGraph.generate(breadth, depth, duplication));
+
+    model = new Model();
+    model.setGroupId("org.example");
+    model.setArtifactId("module");
+    model.setVersion("1.0");
+    model.setPackaging("jar");
+
+    // debug is off, like in a normal build
+    log = new SystemStreamLog();
+  }
+
+  @Benchmark
+  public long write() throws IOException
+  {
+    DiscardingChannel channel = new DiscardingChannel();
+
+    ListingWriter writer = new TextListingWriter(new RecordWriter(channel, "|"));
+    try
+    {
+      ListDependencies.writeHeader(writer, model, false, false);
+      ListDependencies.writeArtifacts(writer, artifacts, null, false, null, log);
+    }
+    finally
+    {
+      writer.close();
+    }
+
+    return channel.written;
+  }
+
+  @Benchmark
+  public long writeBinary() throws IOException
+  {
+    DiscardingChannel channel = new DiscardingChannel();
+
+    ListingWriter writer = new BinaryListingWriter(channel);
+    try
+    {
+      ListDependencies.writeHeader(writer, model, false, false);
+      ListDependencies.writeArtifacts(writer, artifacts, null, false, null, log);
+    }
+    finally
+    {
+      writer.close();
+    }
+
+    return channel.written;
+  }
+
+  @Benchmark
+  public long writeJson() throws IOException
+  {
+    DiscardingChannel channel = new DiscardingChannel();
+
+    ListingWriter writer = new JsonListingWriter(new RecordWriter(channel, "", StandardCharsets.UTF_8));
+    try
+    {
+      ListDependencies.writeHeader(writer, model, false, false);
+      ListDependencies.writeArtifacts(writer, artifacts, null, false, null, log);
+    }
+    finally
+    {
+      writer.close();
+    }
+
+    return channel.written;
+  }
+
+  private static class DiscardingChannel implements WritableByteChannel
+  {
+    private long written = 0;
+    private boolean open = true;
+
+    @Override
+    public int write(ByteBuffer src)
+    {
+      int length = src.remaining();
+      src.position(src.limit());
+      written += length;
+
+      return length;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+      return open;
+    }
+
+    @Override
+    public void close()
+    {
+      open = false;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The generate-pom work after the graph is resolved: merging the resolved artifacts into the pom
+ * dependencies, and writing the pom with the paths rewritten to ${} placeholders.
+ *
+ * Half of the resolved artifacts are already pom dependencies, so the merge scales with both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark
+{
+  private static final String BASEDIR = "/work/example/module";
+  private static final String TARGET = BASEDIR + "/target";
+
+  @Param({"100", "1000", "10000"})
+  public int artifacts;
+
+  private List<ArtifactRecord> resolved;
+  private List<Dependency> dependencies;
+  private Model model;
+
+  @Setup
+  public void setup()
+  {
+    resolved = new ArrayList<>(artifacts);
+    dependencies = new ArrayList<>(artifacts / 2);
+    for (int i = 0; i < artifacts; i++)
+    {
+      String version = "1." + (i % 10);
+      ArtifactRecord record = new ArtifactRecord("org.example.group" + (i % 50), "artifact-" + i, version,
+          i % 11 == 0 ? "tests" : null, "jar", "compile", false, null);
+      resolved.add(record);
+
+      if (i % 2 == 0)
+      {
+        Dependency dep = new Dependency();
+        dep.setGroupId(record.getGroupId());
+        dep.setArtifactId(record.getArtifactId());
+        dep.setVersion(record.getVersion());
+        dep.setClassifier(record.getClassifier());
+        dependencies.add(dep);
+      }
+    }
+
+    model = new Model();
+    model.setModelVersion("4.0.0");
+    model.setGroupId("org.example");
+    model.setArtifactId("module");
+    model.setVersion("1.0");
+    model.setPomFile(new File(BASEDIR, "pom.xml"));
+
+    Build build = new Build();
+    build.setDirectory(TARGET);
+    build.setOutputDirectory(TARGET + "/classes");
+    build.setSourceDirectory(BASEDIR + "/src/main/java");
+    Resource resource = new Resource();
+    resource.setDirectory(BASEDIR + "/src/main/resources");
+    build.addResource(resource);
+    model.setBuild(build);
+
+    List<Dependency> merged = new ArrayList<>(dependencies);
+    EffectivePomGenerator.mergeDependencies(merged, resolved);
+    model.setDependencies(merged);
+  }
+
+  @Benchmark
+  public DependencyIndex merge()
+  {
+    return EffectivePomGenerator.mergeDependencies(new ArrayList<>(dependencies), resolved);
+  }
+
+  @Benchmark
+  public long rewrite() throws IOException
+  {
+    return EffectivePomGenerator.writePom(model, BASEDIR, TARGET, new DiscardingOutputStream());
+  }
+
+  private static class DiscardingOutputStream extends OutputStream
+  {
+    @Override
+    public void write(int b)
+    {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+    {
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic dependency graphs for the benchmarks.
+ *
+ * Every node has breadth children, down to depth levels below the root.  With the given probability a
+ * child is an artifact already used elsewhere in the graph instead of a new one, and it then carries the
+ * same children as everywhere else, like a shared library does in a real graph.  The same arguments
+ * always give the same graph.
+ */
+class SyntheticGraph
+{
+  private static final String[] SCOPES = new String[]{"compile", "compile", "runtime", "provided", "test"};
+
+  private final int breadth;
+  private final int depth;
+  private final double duplication;
+  private final Random random;
+
+  private final List<Artifact> artifacts = new ArrayList<>();
+  private final Map<Integer, int[]> children = new HashMap<>();
+
+  private SyntheticGraph(int breadth, int depth, double duplication, long seed)
+  {
+    this.breadth = breadth;
+    this.depth = depth;
+    this.duplication = duplication;
+    this.random = new Random(seed);
+  }
+
+  static DependencyNode generate(int breadth, int depth, double duplication)
+  {
+    SyntheticGraph graph = new SyntheticGraph(breadth, depth, duplication, 42);
+    return graph.node(null, graph.create(), 0);
+  }
+
+  /**
+   * Distinct artifacts of a graph, as a sorted list of records
+   */
+  static List<ArtifactRecord> artifacts(DependencyNode root)
+  {
+    DependencyVisitor visitor = new DependencyVisitor();
+    root.accept(visitor);
+
+    return visitor.getArtifacts();
+  }
+
+  private DependencyNode node(DependencyNode parent, int id, int level)
+  {
+    DefaultDependencyNode node = new DefaultDependencyNode(parent, artifacts.get(id), null, null, null);
+
+    List<DependencyNode> list = new ArrayList<>();
+    if (level < depth)
+    {
+      for (int child : childrenOf(id))
+      {
+        list.add(node(node, child, level + 1));
+      }
+    }
+    node.setChildren(list);
+
+    return node;
+  }
+
+  private int[] childrenOf(int id)
+  {
+    int[] ids = children.get(id);
+    if (ids == null)
+    {
+      ids = new int[breadth];
+      for (int i = 0; i < breadth; i++)
+      {
+        // never the root, it is the project itself
+        ids[i] = artifacts.size() > 1 && random.nextDouble() < duplication ?
+            1 + random.nextInt(artifacts.size() - 1) : create();
+      }
+      children.put(id, ids);
+    }
+
+    return ids;
+  }
+
+  private int create()
+  {
+    int id = artifacts.size();
+
+    String version = "1." + (id % 10) + (id % 7 == 0 ? "-SNAPSHOT" : "");
+    String classifier = id % 11 == 0 ? "tests" : null;
+    String scope = id == 0 ? null : SCOPES[id % SCOPES.length];
+
+    Artifact artifact = new DefaultArtifact("org.example.group" + (id % 50), "artifact-" + id,
+        VersionRange.createFromVersion(version), scope, "jar", classifier, new DefaultArtifactHandler("jar"),
+        false);
+
+    // half of them resolved, so both ways of naming the artifact are exercised
+    if (id % 2 == 0)
+    {
+      artifact.setFile(new File("/repository/org/example/artifact-" + id + "/" + version + "/artifact-" + id +
+          "-" + version + ".jar"));
+    }
+
+    artifacts.add(artifact);
+
+    return id;
+  }
+}
@@ -0,0 +1,70 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting the artifacts of a dependency graph: the plain, memoized and parallel traversals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark
+{
+  @Param({"4", "8"})
+  public int breadth;
+
+  @Param({"5"})
+  public int depth;
+
+  @Param({"0.0", "0.5", "0.9"})
+  public double duplication;
+
+  private DependencyNode root;
+
+  @Setup
+  public void setup()
+  {
+    root = SyntheticGraph.generate(breadth, depth, duplication);
+  }
+
+  @Benchmark
+  public List<ArtifactRecord> visitor()
+  {
+    DependencyVisitor visitor = new DependencyVisitor();
+    root.accept(visitor);
+
+    return visitor.getArtifacts();
+  }
+
+  @Benchmark
+  public List<ArtifactRecord> memoized()
+  {
+    DependencyVisitor visitor = new DependencyVisitor(null, true);
+    root.accept(visitor);
+
+    return visitor.getArtifacts();
+  }
+
+  @Benchmark
+  public List<ArtifactRecord> parallel()
+  {
+    return ParallelDependencyTraversal.collect(root, null);
+  }
+}
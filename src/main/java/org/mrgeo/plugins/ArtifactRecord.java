@@ -0,0 +1,230 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+
+import java.io.File;
+import java.util.Comparator;
+
+/**
+ * Compact, immutable record of a resolved artifact.
+ *
+ * The coordinate strings are the artifact's own (the binary listing and graph stores share them
+ * through their string tables), equality compares the coordinates and scope behind a precomputed hash,
+ * and the natural order is the same coordinates, so it is consistent with equals.  The listings sort
+ * with BY_NAME, by file name, the order they have always used.
+ */
+public final class ArtifactRecord implements Comparable<ArtifactRecord>
+{
+  private final String groupId;
+  private final String artifactId;
+  private final String version;
+  private final String classifier;
+  private final String type;
+  private final String scope;
+  private final boolean snapshot;
+  private final File file;
+
+  private final int hash;
+
+  /**
+   * File name order of the listings, coordinates breaking ties.  Unlike the natural order it depends on
+   * the file, so only use it to sort a list, not to key a sorted map or set.
+   */
+  public static final Comparator<ArtifactRecord> BY_NAME = new Comparator<ArtifactRecord>()
+  {
+    @Override
+    public int compare(ArtifactRecord a, ArtifactRecord b)
+    {
+      int c = a.getName().compareTo(b.getName());
+      return c != 0 ? c : a.compareTo(b);
+    }
+  };
+
+  // computed on demand, only needed for sorting and output
+  private String name;
+
+  public ArtifactRecord(String groupId, String artifactId, String version, String classifier, String type,
+      String scope, boolean snapshot, File file)
+  {
+    this.groupId = groupId;
+    this.artifactId = artifactId;
+    this.version = version;
+    this.classifier = classifier;
+    this.type = type;
+    this.scope = scope;
+    this.snapshot = snapshot;
+    this.file = file;
+
+    int h = hash(this.groupId);
+    h = 31 * h + hash(this.artifactId);
+    h = 31 * h + hash(this.version);
+    h = 31 * h + hash(this.classifier);
+    h = 31 * h + hash(this.type);
+    h = 31 * h + hash(this.scope);
+    hash = h;
+  }
+
+  public static ArtifactRecord of(Artifact artifact)
+  {
+    return new ArtifactRecord(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
+        artifact.getClassifier(), artifact.getType(), artifact.getScope(), artifact.isSnapshot(),
+        artifact.getFile());
+  }
+
+  public String getGroupId()
+  {
+    return groupId;
+  }
+
+  public String getArtifactId()
+  {
+    return artifactId;
+  }
+
+  public String getVersion()
+  {
+    return version;
+  }
+
+  public String getClassifier()
+  {
+    return classifier;
+  }
+
+  public String getType()
+  {
+    return type;
+  }
+
+  public String getScope()
+  {
+    return scope;
+  }
+
+  public boolean isSnapshot()
+  {
+    return snapshot;
+  }
+
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * The file name of the artifact, or artifactId-version[-classifier][-SNAPSHOT] when it has no file
+   */
+  public String getName()
+  {
+    if (name == null)
+    {
+      if (file != null)
+      {
+        name = file.getName();
+      }
+      else
+      {
+        StringBuilder n = new StringBuilder();
+
+        n.append(artifactId).append("-").append(version);
+
+        if (classifier != null && classifier.length() > 0)
+        {
+          n.append("-").append(classifier);
+        }
+
+        if (snapshot && !n.toString().endsWith("SNAPSHOT"))
+        {
+          n.append("-SNAPSHOT");
+        }
+
+        name = n.toString();
+      }
+    }
+
+    return name;
+  }
+
+  @Override
+  public int compareTo(ArtifactRecord other)
+  {
+    int c = compare(groupId, other.groupId);
+    if (c == 0)
+    {
+      c = compare(artifactId, other.artifactId);
+    }
+    if (c == 0)
+    {
+      c = compare(version, other.version);
+    }
+    if (c == 0)
+    {
+      c = compare(classifier, other.classifier);
+    }
+    if (c == 0)
+    {
+      c = compare(type, other.type);
+    }
+    if (c == 0)
+    {
+      c = compare(scope, other.scope);
+    }
+
+    return c;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (this == obj)
+    {
+      return true;
+    }
+    if (!(obj instanceof ArtifactRecord))
+    {
+      return false;
+    }
+
+    ArtifactRecord other = (ArtifactRecord) obj;
+    return hash == other.hash &&
+        equal(groupId, other.groupId) &&
+        equal(artifactId, other.artifactId) &&
+        equal(version, other.version) &&
+        equal(classifier, other.classifier) &&
+        equal(type, other.type) &&
+        equal(scope, other.scope);
+  }
+
+  @Override
+  public String toString()
+  {
+    return groupId + ":" + artifactId + ":" + type + (classifier == null || classifier.isEmpty() ? "" : ":" + classifier) +
+        ":" + version + ":" + scope;
+  }
+
+  private static boolean equal(String a, String b)
+  {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static int hash(String s)
+  {
+    return s == null ? 0 : s.hashCode();
+  }
+
+  private static int compare(String a, String b)
+  {
+    if (a == null)
+    {
+      return b == null ? 0 : -1;
+    }
+
+    return b == null ? 1 : a.compareTo(b);
+  }
+}
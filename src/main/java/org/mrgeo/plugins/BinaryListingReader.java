@@ -0,0 +1,220 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.ArtifactUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a listing written by BinaryListingWriter.  Each record is read whole into a reused buffer and
+ * decoded from there; records of unknown types are skipped.
+ */
+class BinaryListingReader extends ListingReader
+{
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final InputStream in;
+
+  private final List<String> strings = new ArrayList<>();
+
+  private byte[] record = new byte[256];
+  private int length = 0;
+  private int position = 0;
+
+  private boolean ended = false;
+
+  BinaryListingReader(File file, InputStream in) throws IOException
+  {
+    super(file);
+    this.in = in;
+
+    // the magic, already checked
+    readFully(4);
+  }
+
+  @Override
+  public boolean next() throws IOException
+  {
+    while (!ended)
+    {
+      int type = in.read();
+      if (type < 0)
+      {
+        throw malformed("truncated");
+      }
+
+      long bytes = 0;
+      for (int shift = 0; ; shift += 7)
+      {
+        int b = in.read();
+        if (b < 0 || shift > 28)
+        {
+          throw malformed("truncated");
+        }
+        bytes |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0)
+        {
+          break;
+        }
+      }
+      readFully((int) bytes);
+
+      switch (type)
+      {
+      case BinaryListingWriter.END:
+        ended = true;
+        break;
+      case BinaryListingWriter.MAIN_JAR:
+        readMainJar();
+        break;
+      case BinaryListingWriter.DEPENDENCY:
+        readDependency();
+        return true;
+      default:
+        // COLUMNS, or something newer
+        break;
+      }
+    }
+
+    return false;
+  }
+
+  private void readMainJar() throws IOException
+  {
+    String groupId = string();
+    String artifactId = string();
+    String version = string();
+
+    mainJar = new ArtifactRecord(groupId, artifactId, version, null, null, null,
+        version != null && ArtifactUtils.isSnapshot(version), null);
+    mainJarName = text();
+  }
+
+  private void readDependency() throws IOException
+  {
+    String groupId = string();
+    String artifactId = string();
+    String version = string();
+    String classifier = string();
+    String type = string();
+    String scope = string();
+    boolean snapshot = (get() & BinaryListingWriter.SNAPSHOT) != 0;
+
+    artifact = new ArtifactRecord(groupId, artifactId, version, classifier, type, scope, snapshot, null);
+    name = text();
+    size = varint() - 1;
+    path = text();
+    checksum = checksum();
+  }
+
+  private void readFully(int bytes) throws IOException
+  {
+    if (bytes > record.length)
+    {
+      record = new byte[Math.max(bytes, record.length * 2)];
+    }
+
+    int read = 0;
+    int n;
+    while (read < bytes && (n = in.read(record, read, bytes - read)) >= 0)
+    {
+      read += n;
+    }
+    if (read < bytes)
+    {
+      throw malformed("truncated");
+    }
+
+    length = bytes;
+    position = 0;
+  }
+
+  private int get() throws IOException
+  {
+    if (position >= length)
+    {
+      throw malformed("record overrun");
+    }
+    return record[position++] & 0xff;
+  }
+
+  private long varint() throws IOException
+  {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7)
+    {
+      int b = get();
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0)
+      {
+        return value;
+      }
+    }
+    throw malformed("bad number");
+  }
+
+  private String string() throws IOException
+  {
+    long ref = varint();
+    if (ref == 0)
+    {
+      return null;
+    }
+    if (ref == 1)
+    {
+      String value = text();
+      strings.add(value);
+      return value;
+    }
+    if (ref - 2 >= strings.size())
+    {
+      throw malformed("bad string reference " + ref);
+    }
+    return strings.get((int) (ref - 2));
+  }
+
+  private String text() throws IOException
+  {
+    long bytes = varint() - 1;
+    if (bytes < 0)
+    {
+      return null;
+    }
+    if (bytes > length - position)
+    {
+      throw malformed("record overrun");
+    }
+
+    String value = new String(record, position, (int) bytes, StandardCharsets.UTF_8);
+    position += bytes;
+    return value;
+  }
+
+  private String checksum() throws IOException
+  {
+    int bytes = get();
+    if (bytes == 0)
+    {
+      return null;
+    }
+
+    char[] hex = new char[bytes * 2];
+    for (int i = 0; i < bytes; i++)
+    {
+      int b = get();
+      hex[2 * i] = HEX[b >> 4];
+      hex[2 * i + 1] = HEX[b & 0xf];
+    }
+    return new String(hex);
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    in.close();
+  }
+}
@@ -0,0 +1,245 @@
+package org.mrgeo.plugins;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a listing as length-prefixed binary records.
+ *
+ * The listing starts with the magic "PDL1" and ends with an END record; a record is its type byte, its
+ * length (a varint) and its fields, so a reader can skip the records it doesn't know.  Numbers are
+ * unsigned varints, 7 bits a byte, low bits first.
+ *
+ * The coordinates and scope of the artifacts are string references into a table built as the listing
+ * is written: 0 is null, 1 is a new string that follows (and is added to the table), n is the (n - 2)th
+ * string of the table.  A groupId or version is written once, however many artifacts share it.  Names
+ * and paths are mostly unique, so they are written inline as texts: 0 is null, n is n - 1 UTF-8 bytes
+ * that follow.
+ *
+ * <pre>
+ *   MAIN_JAR:   groupId, artifactId, version (strings), name (text)
+ *   COLUMNS:    flags byte (FILE_DETAILS, CHECKSUMS)
+ *   DEPENDENCY: groupId, artifactId, version, classifier, type, scope (strings), flags byte (SNAPSHOT),
+ *               name (text), size + 1 (0 when unknown), path (text), checksum length byte and bytes
+ * </pre>
+ */
+public class BinaryListingWriter implements ListingWriter
+{
+  static final int MAGIC = 0x50444c31; // "PDL1"
+
+  static final int END = 0;
+  static final int MAIN_JAR = 1;
+  static final int COLUMNS = 2;
+  static final int DEPENDENCY = 3;
+
+  static final int FILE_DETAILS = 1;
+  static final int CHECKSUMS = 2;
+
+  static final int SNAPSHOT = 1;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+
+  // the record being written
+  private byte[] record = new byte[256];
+  private int length = 0;
+
+  private final Map<String, Integer> strings = new HashMap<>();
+
+  public BinaryListingWriter(WritableByteChannel channel)
+  {
+    this.channel = channel;
+    out.putInt(MAGIC);
+  }
+
+  @Override
+  public void writeMainJar(String groupId, String artifactId, String version, CharSequence name) throws IOException
+  {
+    string(groupId);
+    string(artifactId);
+    string(version);
+    text(name);
+    endRecord(MAIN_JAR);
+  }
+
+  @Override
+  public void writeColumns(boolean fileDetails, boolean checksums) throws IOException
+  {
+    put((fileDetails ? FILE_DETAILS : 0) | (checksums ? CHECKSUMS : 0));
+    endRecord(COLUMNS);
+  }
+
+  @Override
+  public void writeDependency(ArtifactRecord artifact, CharSequence name, long size, String path, String checksum)
+      throws IOException
+  {
+    string(artifact.getGroupId());
+    string(artifact.getArtifactId());
+    string(artifact.getVersion());
+    string(artifact.getClassifier());
+    string(artifact.getType());
+    string(artifact.getScope());
+    put(artifact.isSnapshot() ? SNAPSHOT : 0);
+    text(name);
+    varint(size + 1);
+    text(path);
+
+    if (checksum == null)
+    {
+      put(0);
+    }
+    else
+    {
+      int bytes = checksum.length() / 2;
+      put(bytes);
+      for (int i = 0; i < bytes; i++)
+      {
+        put((Character.digit(checksum.charAt(2 * i), 16) << 4) | Character.digit(checksum.charAt(2 * i + 1), 16));
+      }
+    }
+
+    endRecord(DEPENDENCY);
+  }
+
+  /**
+   * Writes the END record, then closes the channel
+   */
+  @Override
+  public void close() throws IOException
+  {
+    try
+    {
+      endRecord(END);
+      flush();
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  private void string(String value)
+  {
+    if (value == null)
+    {
+      put(0);
+      return;
+    }
+
+    Integer id = strings.get(value);
+    if (id != null)
+    {
+      varint(id + 2);
+    }
+    else
+    {
+      strings.put(value, strings.size());
+      put(1);
+      text(value);
+    }
+  }
+
+  private void text(CharSequence value)
+  {
+    if (value == null)
+    {
+      put(0);
+      return;
+    }
+
+    int chars = value.length();
+    for (int i = 0; i < chars; i++)
+    {
+      if (value.charAt(i) >= 0x80)
+      {
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        varint(bytes.length + 1);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, record, length, bytes.length);
+        length += bytes.length;
+        return;
+      }
+    }
+
+    // ASCII, the usual case, is its own UTF-8
+    varint(chars + 1);
+    ensure(chars);
+    for (int i = 0; i < chars; i++)
+    {
+      record[length++] = (byte) value.charAt(i);
+    }
+  }
+
+  private void varint(long value)
+  {
+    ensure(10);
+    while ((value & ~0x7fL) != 0)
+    {
+      record[length++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    record[length++] = (byte) value;
+  }
+
+  private void put(int value)
+  {
+    ensure(1);
+    record[length++] = (byte) value;
+  }
+
+  private void ensure(int bytes)
+  {
+    if (length + bytes > record.length)
+    {
+      byte[] grown = new byte[Math.max(record.length * 2, length + bytes)];
+      System.arraycopy(record, 0, grown, 0, length);
+      record = grown;
+    }
+  }
+
+  private void endRecord(int type) throws IOException
+  {
+    if (out.remaining() < 11)
+    {
+      flush();
+    }
+
+    out.put((byte) type);
+    long size = length;
+    while ((size & ~0x7fL) != 0)
+    {
+      out.put((byte) ((size & 0x7f) | 0x80));
+      size >>>= 7;
+    }
+    out.put((byte) size);
+
+    int offset = 0;
+    while (offset < length)
+    {
+      if (!out.hasRemaining())
+      {
+        flush();
+      }
+
+      int bytes = Math.min(out.remaining(), length - offset);
+      out.put(record, offset, bytes);
+      offset += bytes;
+    }
+
+    length = 0;
+  }
+
+  private void flush() throws IOException
+  {
+    out.flip();
+    while (out.hasRemaining())
+    {
+      channel.write(out);
+    }
+    out.clear();
+  }
+}
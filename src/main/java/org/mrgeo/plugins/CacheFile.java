@@ -0,0 +1,142 @@
+package org.mrgeo.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The file handling shared by the binary caches (checksums, repository index, jar index and graph
+ * store): the contents are followed by a CRC32 of everything before them, and a save writes a temporary
+ * sibling that is moved over the file, so a reader, or another build sharing the cache, never sees a
+ * partial one.
+ */
+final class CacheFile
+{
+  /**
+   * Writes the contents of a cache file, see save(File, Contents)
+   */
+  interface Contents
+  {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private CacheFile()
+  {
+  }
+
+  /**
+   * Appends the CRC32 trailer to the contents written so far and returns the whole file
+   */
+  static byte[] seal(ByteArrayOutputStream bytes) throws IOException
+  {
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(crc.getValue());
+    out.flush();
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Checks the CRC32 trailer of a file and returns its contents, without the trailer
+   *
+   * @param minimum the smallest valid contents
+   */
+  static DataInputStream open(byte[] bytes, int minimum) throws IOException
+  {
+    if (bytes.length < minimum + 8)
+    {
+      throw new IOException("truncated");
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length - 8);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    in.skipBytes(bytes.length - 8);
+    if (in.readLong() != crc.getValue())
+    {
+      throw new IOException("checksum mismatch");
+    }
+
+    return new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+  }
+
+  /**
+   * Replaces the file with the bytes, already sealed
+   */
+  static void save(File file, byte[] bytes) throws IOException
+  {
+    File tmp = createTemp(file);
+    try
+    {
+      Files.write(tmp.toPath(), bytes);
+      replace(tmp, file);
+    }
+    finally
+    {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  /**
+   * Replaces the file with the contents and their CRC32 trailer, streamed rather than built in memory
+   */
+  static void save(File file, Contents contents) throws IOException
+  {
+    File tmp = createTemp(file);
+    try
+    {
+      CRC32 crc = new CRC32();
+      try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tmp.toPath()), 1 << 16))
+      {
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(stream, crc));
+        contents.write(out);
+        out.flush();
+
+        new DataOutputStream(stream).writeLong(crc.getValue());
+      }
+
+      replace(tmp, file);
+    }
+    finally
+    {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  private static File createTemp(File file) throws IOException
+  {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory())
+    {
+      Files.createDirectories(dir.toPath());
+    }
+
+    return File.createTempFile(file.getName(), ".tmp", dir);
+  }
+
+  private static void replace(File tmp, File file) throws IOException
+  {
+    try
+    {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (AtomicMoveNotSupportedException e)
+    {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SHA-256 checksums of artifact files, kept on disk between builds.
+ *
+ * A checksum is reused for as long as the file has the same path, size and timestamp, so an unchanged
+ * jar is only ever hashed once.  The others are hashed in parallel, each one read through memory
+ * mapped windows of its file.  Entries of files that no longer exist are dropped when the cache is saved.
+ *
+ * The on-disk format is a magic number, the entries (path, size, timestamp, checksum) and a CRC32 of
+ * everything before it.
+ */
+public class ChecksumCache
+{
+  private static final int MAGIC = 0x50435331; // "PCS1"
+
+  // files are mapped this much at a time, so huge files don't need a huge mapping
+  private static final long WINDOW = 64L * 1024 * 1024;
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  // one per build and cache file, the execution request is shared by the whole build
+  private static final Map<MavenExecutionRequest, Map<File, ChecksumCache>> sessions = new WeakHashMap<>();
+
+  private final File cacheFile;
+  private final Log log;
+  private final ConcurrentMap<String, Entry> entries;
+
+  private ChecksumCache(File cacheFile, Map<String, Entry> entries, Log log)
+  {
+    this.cacheFile = cacheFile;
+    this.entries = new ConcurrentHashMap<>(entries);
+    this.log = log;
+  }
+
+  /**
+   * The cache of the build, loaded from the cache file the first time it is asked for
+   */
+  public static ChecksumCache getInstance(MavenSession session, File cacheFile, Log log)
+  {
+    synchronized (sessions)
+    {
+      Map<File, ChecksumCache> caches = sessions.get(session.getRequest());
+      if (caches == null)
+      {
+        caches = new HashMap<>();
+        sessions.put(session.getRequest(), caches);
+      }
+
+      ChecksumCache cache = caches.get(cacheFile);
+      if (cache == null)
+      {
+        cache = load(cacheFile, log);
+        caches.put(cacheFile, cache);
+      }
+
+      return cache;
+    }
+  }
+
+  /**
+   * The cache as stored in the cache file, empty if there is none (or it is corrupt)
+   */
+  static ChecksumCache load(File cacheFile, Log log)
+  {
+    Map<String, Entry> entries = new HashMap<>();
+    if (cacheFile.isFile())
+    {
+      try
+      {
+        entries = read(Files.readAllBytes(cacheFile.toPath()));
+      }
+      catch (IOException e)
+      {
+        log.warn("Discarding corrupt checksum cache " + cacheFile + ": " + e.getMessage());
+      }
+    }
+
+    return new ChecksumCache(cacheFile, entries, log);
+  }
+
+  /**
+   * The checksums of the files, hashing (in parallel) only those that aren't cached or have changed.
+   * Newly hashed files are saved to the cache file.
+   *
+   * @return the hex SHA-256 of each file
+   */
+  public Map<File, String> checksums(Collection<File> files) throws IOException
+  {
+    Map<File, String> checksums = new HashMap<>();
+    List<File> missing = new ArrayList<>();
+
+    for (File file : new LinkedHashSet<>(files))
+    {
+      Entry entry = entries.get(file.getAbsolutePath());
+      if (entry != null && entry.size == file.length() && entry.modified == file.lastModified())
+      {
+        checksums.put(file, entry.checksum);
+      }
+      else
+      {
+        missing.add(file);
+      }
+    }
+
+    if (missing.isEmpty())
+    {
+      return checksums;
+    }
+
+    long start = System.currentTimeMillis();
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(missing.size(), Runtime.getRuntime().availableProcessors()));
+    try
+    {
+      List<Future<Entry>> futures = new ArrayList<>(missing.size());
+      for (final File file : missing)
+      {
+        futures.add(executor.submit(new Callable<Entry>()
+        {
+          @Override
+          public Entry call() throws IOException
+          {
+            // taken before hashing, a file changing in the meantime gets hashed again next time
+            long size = file.length();
+            long modified = file.lastModified();
+
+            return new Entry(size, modified, hash(file));
+          }
+        }));
+      }
+
+      for (int i = 0; i < missing.size(); i++)
+      {
+        File file = missing.get(i);
+        Entry entry = futures.get(i).get();
+
+        entries.put(file.getAbsolutePath(), entry);
+        checksums.put(file, entry.checksum);
+      }
+    }
+    catch (ExecutionException e)
+    {
+      throw new IOException("Couldn't compute checksums", e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted computing checksums", e);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    log.info("  hashed " + missing.size() + " files in " + (System.currentTimeMillis() - start) + "ms");
+
+    save();
+
+    return checksums;
+  }
+
+  static String hash(File file) throws IOException
+  {
+    MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+    {
+      long size = channel.size();
+      for (long position = 0; position < size; position += WINDOW)
+      {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+            Math.min(WINDOW, size - position));
+        digest.update(buffer);
+      }
+    }
+
+    byte[] bytes = digest.digest();
+
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++)
+    {
+      hex[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+      hex[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+    }
+
+    return new String(hex);
+  }
+
+  private synchronized void save() throws IOException
+  {
+    // files that are gone (e.g. an old build's) would otherwise stay in the cache for good
+    for (String path : entries.keySet())
+    {
+      if (!new File(path).isFile())
+      {
+        entries.remove(path);
+      }
+    }
+
+    CacheFile.save(cacheFile, write(entries));
+  }
+
+  private static class Entry
+  {
+    final long size;
+    final long modified;
+    final String checksum;
+
+    Entry(long size, long modified, String checksum)
+    {
+      this.size = size;
+      this.modified = modified;
+      this.checksum = checksum;
+    }
+  }
+
+  static byte[] write(Map<String, Entry> entries) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    // a copy, other threads can be adding to the cache
+    Map<String, Entry> snapshot = new HashMap<>(entries);
+
+    out.writeInt(MAGIC);
+    out.writeInt(snapshot.size());
+    for (Map.Entry<String, Entry> entry : snapshot.entrySet())
+    {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue().size);
+      out.writeLong(entry.getValue().modified);
+      out.writeUTF(entry.getValue().checksum);
+    }
+
+    return CacheFile.seal(bytes);
+  }
+
+  static Map<String, Entry> read(byte[] bytes) throws IOException
+  {
+    DataInputStream in = CacheFile.open(bytes, 8);
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("not a checksum cache");
+    }
+
+    int count = in.readInt();
+    Map<String, Entry> entries = new HashMap<>(count * 2);
+    for (int i = 0; i < count; i++)
+    {
+      String path = in.readUTF();
+      long size = in.readLong();
+      long modified = in.readLong();
+      String checksum = in.readUTF();
+
+      entries.put(path, new Entry(size, modified, checksum));
+    }
+
+    return entries;
+  }
+}
@@ -0,0 +1,145 @@
+package org.mrgeo.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The differences between two sets of artifacts: the ones added, removed, and the ones whose version or
+ * scope changed.
+ *
+ * Artifacts are matched on groupId, artifactId, type and classifier.  Both sides are sorted on that key
+ * and merged in a single pass, so apart from the sort the diff is linear, however big the graphs.
+ */
+public class DependencyDiff
+{
+  private final List<ArtifactRecord> added = new ArrayList<>();
+  private final List<ArtifactRecord> removed = new ArrayList<>();
+
+  // {baseline, current}
+  private final List<ArtifactRecord[]> changed = new ArrayList<>();
+
+  private static final Comparator<Keyed> BY_KEY = new Comparator<Keyed>()
+  {
+    @Override
+    public int compare(Keyed a, Keyed b)
+    {
+      int c = a.key.compareTo(b.key);
+      return c != 0 ? c : a.artifact.compareTo(b.artifact);
+    }
+  };
+
+  private static class Keyed
+  {
+    final String key;
+    final ArtifactRecord artifact;
+
+    Keyed(ArtifactRecord artifact)
+    {
+      this.key = key(artifact);
+      this.artifact = artifact;
+    }
+  }
+
+  /**
+   * The project artifacts themselves (no scope) aren't compared
+   */
+  public DependencyDiff(Collection<ArtifactRecord> baseline, Collection<ArtifactRecord> current)
+  {
+    Keyed[] before = sort(baseline);
+    Keyed[] after = sort(current);
+
+    int b = 0;
+    int a = 0;
+    while (b < before.length || a < after.length)
+    {
+      int c;
+      if (b == before.length)
+      {
+        c = 1;
+      }
+      else if (a == after.length)
+      {
+        c = -1;
+      }
+      else
+      {
+        c = before[b].key.compareTo(after[a].key);
+      }
+
+      if (c < 0)
+      {
+        removed.add(before[b++].artifact);
+      }
+      else if (c > 0)
+      {
+        added.add(after[a++].artifact);
+      }
+      else
+      {
+        ArtifactRecord old = before[b++].artifact;
+        ArtifactRecord now = after[a++].artifact;
+        if (!equal(old.getVersion(), now.getVersion()) || !equal(old.getScope(), now.getScope()))
+        {
+          changed.add(new ArtifactRecord[]{old, now});
+        }
+      }
+    }
+  }
+
+  /**
+   * groupId:artifactId:type:classifier, a missing and an empty classifier are the same
+   */
+  static String key(ArtifactRecord artifact)
+  {
+    return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getType() + ":" +
+        (artifact.getClassifier() == null ? "" : artifact.getClassifier());
+  }
+
+  private static Keyed[] sort(Collection<ArtifactRecord> artifacts)
+  {
+    List<Keyed> keyed = new ArrayList<>(artifacts.size());
+    for (ArtifactRecord artifact : artifacts)
+    {
+      if (artifact.getScope() != null)
+      {
+        keyed.add(new Keyed(artifact));
+      }
+    }
+
+    Keyed[] sorted = keyed.toArray(new Keyed[keyed.size()]);
+    Arrays.sort(sorted, BY_KEY);
+
+    return sorted;
+  }
+
+  private static boolean equal(String a, String b)
+  {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  public boolean isEmpty()
+  {
+    return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+  }
+
+  public List<ArtifactRecord> getAdded()
+  {
+    return added;
+  }
+
+  public List<ArtifactRecord> getRemoved()
+  {
+    return removed;
+  }
+
+  /**
+   * The changed artifacts, as {baseline, current} pairs
+   */
+  public List<ArtifactRecord[]> getChanged()
+  {
+    return changed;
+  }
+}
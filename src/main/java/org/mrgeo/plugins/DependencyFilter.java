@@ -0,0 +1,193 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filters artifacts by scope and by coordinate patterns.
+ *
+ * Scopes and patterns are comma separated lists.  Patterns are of the form
+ * groupId[:artifactId[:type[:version]]], where each part may use '*' as a wildcard, and missing parts
+ * match anything.  An artifact is included when its scope is included (or no includeScopes were
+ * given) and not excluded, and it matches an include pattern (or no includes were given) and no
+ * exclude pattern.
+ *
+ * When handed to the DependencyGraphBuilder a rejected artifact's whole subtree is left out of the
+ * graph.
+ */
+public class DependencyFilter implements ArtifactFilter
+{
+  private final Set<String> includeScopes;
+  private final Set<String> excludeScopes;
+  private final List<String[]> includes;
+  private final List<String[]> excludes;
+
+  private final String key;
+
+  public DependencyFilter(String includeScopes, String excludeScopes, String includes, String excludes)
+  {
+    this.includeScopes = scopes(includeScopes);
+    this.excludeScopes = scopes(excludeScopes);
+    this.includes = patterns(includes);
+    this.excludes = patterns(excludes);
+
+    key = "scopes=" + normalize(includeScopes) + "!" + normalize(excludeScopes) +
+        ";patterns=" + normalize(includes) + "!" + normalize(excludes);
+  }
+
+  /**
+   * True if nothing is filtered
+   */
+  public boolean isEmpty()
+  {
+    return includeScopes.isEmpty() && excludeScopes.isEmpty() && includes.isEmpty() && excludes.isEmpty();
+  }
+
+  /**
+   * A string identifying the filter, for use in cache keys and fingerprints
+   */
+  public String getKey()
+  {
+    return key;
+  }
+
+  @Override
+  public boolean include(Artifact artifact)
+  {
+    String scope = artifact.getScope();
+    if (!includeScopes.isEmpty() && (scope == null || !includeScopes.contains(scope)))
+    {
+      return false;
+    }
+    if (scope != null && excludeScopes.contains(scope))
+    {
+      return false;
+    }
+
+    if (!includes.isEmpty() && !matchesAny(artifact, includes))
+    {
+      return false;
+    }
+
+    return !matchesAny(artifact, excludes);
+  }
+
+  private static boolean matchesAny(Artifact artifact, List<String[]> patterns)
+  {
+    for (String[] pattern : patterns)
+    {
+      if (matches(pattern, 0, artifact.getGroupId()) &&
+          matches(pattern, 1, artifact.getArtifactId()) &&
+          matches(pattern, 2, artifact.getType()) &&
+          matches(pattern, 3, artifact.getVersion()))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean matches(String[] pattern, int part, String value)
+  {
+    if (part >= pattern.length || pattern[part].isEmpty())
+    {
+      return true;
+    }
+
+    return glob(pattern[part], 0, value == null ? "" : value, 0);
+  }
+
+  private static boolean glob(String pattern, int p, String value, int v)
+  {
+    while (p < pattern.length())
+    {
+      char c = pattern.charAt(p);
+      if (c == '*')
+      {
+        // collapse runs of '*', then try every possible length for it
+        while (p < pattern.length() && pattern.charAt(p) == '*')
+        {
+          p++;
+        }
+        if (p == pattern.length())
+        {
+          return true;
+        }
+
+        for (int i = v; i < value.length(); i++)
+        {
+          if (glob(pattern, p, value, i))
+          {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      if (v >= value.length() || value.charAt(v) != c)
+      {
+        return false;
+      }
+
+      p++;
+      v++;
+    }
+
+    return v == value.length();
+  }
+
+  private static Set<String> scopes(String list)
+  {
+    if (list == null || list.trim().isEmpty())
+    {
+      return Collections.emptySet();
+    }
+
+    Set<String> scopes = new HashSet<>();
+    for (String scope : list.split(","))
+    {
+      if (!scope.trim().isEmpty())
+      {
+        scopes.add(scope.trim());
+      }
+    }
+
+    return scopes;
+  }
+
+  private static List<String[]> patterns(String list)
+  {
+    if (list == null || list.trim().isEmpty())
+    {
+      return Collections.emptyList();
+    }
+
+    List<String[]> patterns = new ArrayList<>();
+    for (String pattern : list.split(","))
+    {
+      if (!pattern.trim().isEmpty())
+      {
+        String[] parts = pattern.trim().split(":");
+        for (int i = 0; i < parts.length; i++)
+        {
+          parts[i] = parts[i].trim();
+        }
+        patterns.add(parts);
+      }
+    }
+
+    return patterns;
+  }
+
+  private static String normalize(String list)
+  {
+    return list == null ? "" : list.replaceAll("\\s", "");
+  }
+}
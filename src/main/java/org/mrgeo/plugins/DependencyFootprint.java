@@ -0,0 +1,555 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Goal to report the on-disk footprint of the dependencies, and how much of it each direct dependency
+ * accounts for.
+ *
+ * The subtree of a direct dependency is split into its exclusive size, the artifacts only that direct
+ * dependency brings in, and its shared size, the artifacts other direct dependencies bring in too.  The
+ * exclusive size is what removing the direct dependency would save.
+ *
+ * It works on the same resolved graph as list-dependencies (see DependencyResolver), so it reports the
+ * same artifacts.  An artifact two direct dependencies need shows up under both as duplicate nodes, and
+ * every node of an artifact links to the same entry, so whatever it depends on is shared too.  Which
+ * direct dependencies each artifact is reached from is tracked in a bitset (one bit per direct
+ * dependency), propagated down the graph in a single pass.  The file sizes are looked up in parallel,
+ * since a file in a directory the local repository index didn't list again is looked at on disk.
+ *
+ * @goal dependency-footprint
+ * @requiresDependencyResolution compile
+ * @threadSafe
+ */
+public class DependencyFootprint
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   *  @parameter default-value="${project}"
+   *  @readonly
+   */
+  private MavenProject project;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * File to write the report to
+   * @parameter alias="outputFile"
+   *            default-value="${project.build.directory}/dependency-footprint.properties"
+   */
+  private File outputFile;
+
+  /**
+   * Where the index of the local repository is kept between builds.  Set it to a file outside
+   * the build directory (e.g. under ~/.m2) to share it between modules and checkouts.
+   * @parameter alias="repositoryIndexFile"
+   *            default-value="${project.build.directory}/pomtools-repository.index"
+   */
+  private File repositoryIndexFile;
+
+  /**
+   * Number of artifact sizes looked up at the same time
+   * @parameter alias="threads"
+   *            default-value="4"
+   */
+  private int threads;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  /**
+   * The artifacts of the dependency graph, linked the way the graph links them.  Every artifact is a
+   * single entry, whichever nodes it appears as, so a duplicate node links to the same entry as the
+   * first one.
+   */
+  static class FootprintGraph
+  {
+    // deduped like DependencyVisitor does, so the artifacts are those list-dependencies lists
+    private final Map<ArtifactRecord, Integer> ids = new HashMap<>();
+    private final List<ArtifactRecord> artifacts = new ArrayList<>();
+    private final List<List<Integer>> edges = new ArrayList<>();
+    private final List<Integer> direct = new ArrayList<>();
+
+    /**
+     * @param filter artifacts to include, anything it rejects is skipped along with its whole subtree,
+     *               may be null
+     */
+    FootprintGraph(DependencyNode root, ArtifactFilter filter)
+    {
+      // {node, id of its parent (-1 for a direct dependency)}
+      Deque<Object[]> stack = new ArrayDeque<>();
+      for (int c = root.getChildren().size() - 1; c >= 0; c--)
+      {
+        stack.push(new Object[]{root.getChildren().get(c), -1});
+      }
+
+      while (!stack.isEmpty())
+      {
+        Object[] top = stack.pop();
+        DependencyNode node = (DependencyNode) top[0];
+        int parent = (Integer) top[1];
+
+        if (filter != null && !filter.include(node.getArtifact()))
+        {
+          continue;
+        }
+
+        ArtifactRecord record = ArtifactRecord.of(node.getArtifact());
+        Integer id = ids.get(record);
+        if (id == null)
+        {
+          id = artifacts.size();
+          ids.put(record, id);
+          artifacts.add(record);
+          edges.add(new ArrayList<Integer>(0));
+        }
+
+        if (parent < 0)
+        {
+          if (!direct.contains(id))
+          {
+            direct.add(id);
+          }
+        }
+        else if (parent != id && !edges.get(parent).contains(id))
+        {
+          edges.get(parent).add(id);
+        }
+
+        for (int c = node.getChildren().size() - 1; c >= 0; c--)
+        {
+          stack.push(new Object[]{node.getChildren().get(c), id});
+        }
+      }
+    }
+
+    int size()
+    {
+      return artifacts.size();
+    }
+
+    ArtifactRecord getArtifact(int id)
+    {
+      return artifacts.get(id);
+    }
+
+    List<ArtifactRecord> getArtifacts()
+    {
+      return artifacts;
+    }
+
+    /**
+     * The direct dependencies, in the order they're declared.  Their positions are the bits of members().
+     */
+    List<Integer> getDirect()
+    {
+      return direct;
+    }
+
+    /**
+     * The direct dependencies each artifact is reached from, as bits.  They're propagated down the
+     * graph in topological order, a single pass unless the artifacts link in a cycle.
+     */
+    BitSet[] members()
+    {
+      BitSet[] members = new BitSet[artifacts.size()];
+      for (int id = 0; id < members.length; id++)
+      {
+        members[id] = new BitSet();
+      }
+      for (int d = 0; d < direct.size(); d++)
+      {
+        members[direct.get(d)].set(d);
+      }
+
+      List<Integer> order = topologicalOrder();
+      boolean cyclic = hasCycle(order);
+
+      boolean changed;
+      do
+      {
+        changed = false;
+        for (int id : order)
+        {
+          for (int child : edges.get(id))
+          {
+            int before = members[child].cardinality();
+            members[child].or(members[id]);
+            changed |= members[child].cardinality() != before;
+          }
+        }
+      }
+      while (cyclic && changed);
+
+      return members;
+    }
+
+    // reverse post order of a depth first walk from the direct dependencies
+    private List<Integer> topologicalOrder()
+    {
+      List<Integer> post = new ArrayList<>(artifacts.size());
+      boolean[] seen = new boolean[artifacts.size()];
+      int[] next = new int[artifacts.size()];
+
+      for (int start : direct)
+      {
+        if (seen[start])
+        {
+          continue;
+        }
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(start);
+        seen[start] = true;
+        while (!stack.isEmpty())
+        {
+          int id = stack.peek();
+          if (next[id] < edges.get(id).size())
+          {
+            int child = edges.get(id).get(next[id]++);
+            if (!seen[child])
+            {
+              seen[child] = true;
+              stack.push(child);
+            }
+          }
+          else
+          {
+            stack.pop();
+            post.add(id);
+          }
+        }
+      }
+
+      Collections.reverse(post);
+      return post;
+    }
+
+    private boolean hasCycle(List<Integer> order)
+    {
+      int[] position = new int[artifacts.size()];
+      for (int p = 0; p < order.size(); p++)
+      {
+        position[order.get(p)] = p;
+      }
+
+      for (int id : order)
+      {
+        for (int child : edges.get(id))
+        {
+          if (position[child] <= position[id])
+          {
+            return true;
+          }
+        }
+      }
+
+      return false;
+    }
+  }
+
+  /**
+   * The sizes of the artifacts' files, looked up in parallel, each thread taking a slice of the
+   * artifacts.  A missing file counts as empty.
+   *
+   * @param threads number of threads looking up sizes
+   */
+  static long[] sizes(final List<ArtifactRecord> artifacts, final LocalRepositoryIndex index, int threads,
+      Log log) throws IOException
+  {
+    final long[] sizes = new long[artifacts.size()];
+    if (artifacts.isEmpty())
+    {
+      return sizes;
+    }
+
+    int slices = Math.max(1, Math.min(artifacts.size(), threads));
+    ExecutorService executor = Executors.newFixedThreadPool(slices);
+    try
+    {
+      List<Future<List<Integer>>> futures = new ArrayList<>(slices);
+      for (int s = 0; s < slices; s++)
+      {
+        final int from = (int) ((long) artifacts.size() * s / slices);
+        final int to = (int) ((long) artifacts.size() * (s + 1) / slices);
+
+        futures.add(executor.submit(new Callable<List<Integer>>()
+        {
+          @Override
+          public List<Integer> call()
+          {
+            List<Integer> missing = new ArrayList<>();
+            for (int id = from; id < to; id++)
+            {
+              LocalRepositoryIndex.Entry entry = ListDependencies.findFile(index, artifacts.get(id));
+              if (entry == null)
+              {
+                missing.add(id);
+              }
+              else
+              {
+                sizes[id] = entry.getSize();
+              }
+            }
+
+            return missing;
+          }
+        }));
+      }
+
+      // the sizes are seen once each slice's future is done
+      for (Future<List<Integer>> future : futures)
+      {
+        for (int id : future.get())
+        {
+          log.warn("Not in the local repository, counted as empty: " + artifacts.get(id));
+        }
+      }
+    }
+    catch (ExecutionException e)
+    {
+      throw new IOException("Couldn't look up the artifact sizes", e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted looking up the artifact sizes", e);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    return sizes;
+  }
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    try
+    {
+      PhaseMetrics metrics = new PhaseMetrics("dependency-footprint", project.getId());
+
+      DependencyFilter filter = new DependencyFilter(includeScopes, excludeScopes, includes, excludes);
+
+      // never from a lockfile, it has no graph
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(filter)
+          .resolve(project, metrics);
+
+      metrics.start(PhaseMetrics.VISIT);
+      FootprintGraph graph = new FootprintGraph(resolved.getRoot(), filter.isEmpty() ? null : filter);
+      List<Integer> direct = graph.getDirect();
+
+      metrics.start(PhaseMetrics.INDEX);
+      long[] sizes = sizes(graph.getArtifacts(), LocalRepositoryIndex.getInstance(session, repositoryIndexFile, log),
+          threads, log);
+
+      long total = 0;
+      for (long size : sizes)
+      {
+        total += size;
+      }
+
+      metrics.start(PhaseMetrics.MERGE);
+      BitSet[] members = graph.members();
+
+      // {artifacts, exclusive size, shared size} of each direct dependency
+      final long[][] subtrees = new long[direct.size()][3];
+      for (int id = 0; id < graph.size(); id++)
+      {
+        boolean shared = members[id].cardinality() > 1;
+        for (int d = members[id].nextSetBit(0); d >= 0; d = members[id].nextSetBit(d + 1))
+        {
+          subtrees[d][0]++;
+          subtrees[d][shared ? 2 : 1] += sizes[id];
+        }
+      }
+
+      // the biggest savings first
+      List<Integer> order = new ArrayList<>(direct.size());
+      for (int d = 0; d < direct.size(); d++)
+      {
+        order.add(d);
+      }
+      final List<ArtifactRecord> names = new ArrayList<>(direct.size());
+      for (int id : direct)
+      {
+        names.add(graph.getArtifact(id));
+      }
+      Collections.sort(order, new Comparator<Integer>()
+      {
+        @Override
+        public int compare(Integer a, Integer b)
+        {
+          int c = Long.compare(subtrees[b][1], subtrees[a][1]);
+          return c != 0 ? c : ArtifactRecord.BY_NAME.compare(names.get(a), names.get(b));
+        }
+      });
+
+      Map<ArtifactRecord, Integer> sorted = new TreeMap<>(ArtifactRecord.BY_NAME);
+      for (int id = 0; id < graph.size(); id++)
+      {
+        sorted.put(graph.getArtifact(id), id);
+      }
+
+      log.info("Writing to: " + outputFile);
+
+      metrics.start(PhaseMetrics.SERIALIZE);
+      OutputFile output = new OutputFile(outputFile);
+      try
+      {
+        RecordWriter writer = new RecordWriter(output.openChannel(), "|", StandardCharsets.UTF_8);
+        try
+        {
+          writer.line("# Footprint: ");
+          writer.line("#  Artifacts | Size");
+          writer.field().append(graph.size());
+          writer.field().append(total);
+          writer.endRecord();
+
+          writer.line("\n\n# Direct Dependencies: ");
+          writer.line("#  GroupId | ArtifactId | Version | Scope | Artifacts | Subtree Size | Exclusive Size | Shared Size");
+          for (int d : order)
+          {
+            ArtifactRecord artifact = names.get(d);
+            writer.field(artifact.getGroupId())
+                .field(artifact.getArtifactId())
+                .field(artifact.getVersion())
+                .field(artifact.getScope())
+                .field().append(subtrees[d][0]);
+            writer.field().append(subtrees[d][1] + subtrees[d][2]);
+            writer.field().append(subtrees[d][1]);
+            writer.field().append(subtrees[d][2]);
+            writer.endRecord();
+          }
+
+          writer.line("\n\n# Artifacts: ");
+          writer.line("#  GroupId | ArtifactId | Version | Scope | Size | Direct Dependencies");
+          for (Map.Entry<ArtifactRecord, Integer> artifact : sorted.entrySet())
+          {
+            writer.field(artifact.getKey().getGroupId())
+                .field(artifact.getKey().getArtifactId())
+                .field(artifact.getKey().getVersion())
+                .field(artifact.getKey().getScope())
+                .field().append(sizes[artifact.getValue()]);
+
+            StringBuilder via = writer.field();
+            BitSet bits = members[artifact.getValue()];
+            for (int d = bits.nextSetBit(0); d >= 0; d = bits.nextSetBit(d + 1))
+            {
+              if (d > bits.nextSetBit(0))
+              {
+                via.append(',');
+              }
+              via.append(ArtifactUtils.versionlessKey(names.get(d).getGroupId(), names.get(d).getArtifactId()));
+            }
+
+            writer.endRecord();
+          }
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        metrics.start(PhaseMetrics.WRITE);
+        output.commit();
+      }
+      finally
+      {
+        output.discard();
+      }
+      metrics.stop();
+
+      log.info("  " + graph.size() + " artifacts, " + total + " bytes from " + direct.size() +
+          " direct dependencies");
+
+      PhaseMetrics.register(session, metrics);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "error", "error");
+    }
+  }
+}
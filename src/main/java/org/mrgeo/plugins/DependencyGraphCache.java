@@ -0,0 +1,274 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilderException;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Session-wide cache of dependency graphs, shared by every module and goal in the reactor.
+ *
+ * Graphs are keyed by the inputs of the resolution only: the effective dependency set (dependencies,
+ * dependency management and exclusions) and the filter.  Modules with the same inputs (e.g. siblings
+ * inheriting everything from their parent) share a single graph, handed to each with the module itself
+ * as its root.  Concurrent requests for the same key (mvn -T) wait on the single in-flight build instead
+ * of starting their own.
+ *
+ * At most MAX_GRAPHS graphs are kept, the least recently used are dropped first.
+ *
+ * Graphs not already in memory are looked up in a GraphStore, when one is configured, before
+ * falling back to building them.
+ */
+public class DependencyGraphCache
+{
+  // keyed on the execution request, which (unlike the session) is shared by the per-thread session
+  // clones in a parallel build, and goes away with the build itself.
+  private static final Map<MavenExecutionRequest, DependencyGraphCache> caches = new WeakHashMap<>();
+
+  static final int MAX_GRAPHS = 256;
+
+  // access ordered, guarded by itself
+  private final Map<String, FutureTask<DependencyNode>> graphs = new Graphs();
+
+  private static class Graphs extends LinkedHashMap<String, FutureTask<DependencyNode>>
+  {
+    private static final long serialVersionUID = 1L;
+
+    Graphs()
+    {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, FutureTask<DependencyNode>> eldest)
+    {
+      return size() > MAX_GRAPHS;
+    }
+  }
+
+  public static DependencyGraphCache getInstance(MavenSession session)
+  {
+    synchronized (caches)
+    {
+      DependencyGraphCache cache = caches.get(session.getRequest());
+      if (cache == null)
+      {
+        cache = new DependencyGraphCache();
+        caches.put(session.getRequest(), cache);
+      }
+
+      return cache;
+    }
+  }
+
+  public DependencyNode buildDependencyGraph(MavenProject project, DependencyGraphBuilder builder)
+      throws DependencyGraphBuilderException
+  {
+    return buildDependencyGraph(project, builder, null, null);
+  }
+
+  /**
+   * Builds the graph, or takes it from this cache or the (optional) persistent store.
+   *
+   * @param filter prunes the graph as it is built, may be null
+   * @param store  persistent graph store, may be null
+   */
+  public DependencyNode buildDependencyGraph(final MavenProject project, final DependencyGraphBuilder builder,
+      DependencyFilter filter, final GraphStore store) throws DependencyGraphBuilderException
+  {
+    final String filterKey = filter == null ? "" : filter.getKey();
+    final DependencyFilter graphFilter = filter == null || filter.isEmpty() ? null : filter;
+
+    String key = makeKey(project) + "|filter" + filterKey;
+
+    FutureTask<DependencyNode> task;
+    boolean created = false;
+    synchronized (graphs)
+    {
+      task = graphs.get(key);
+      if (task == null)
+      {
+        task = newTask(project, builder, graphFilter, filterKey, store);
+        graphs.put(key, task);
+        created = true;
+      }
+    }
+
+    // built outside the lock, so other keys aren't held up
+    if (created)
+    {
+      task.run();
+    }
+
+    try
+    {
+      return reroot(task.get(), project);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new DependencyGraphBuilderException("Interrupted building the dependency graph for " + project.getId(), e);
+    }
+    catch (ExecutionException e)
+    {
+      // don't remember failures, the next caller gets to try again
+      synchronized (graphs)
+      {
+        if (graphs.get(key) == task)
+        {
+          graphs.remove(key);
+        }
+      }
+
+      if (e.getCause() instanceof DependencyGraphBuilderException)
+      {
+        throw (DependencyGraphBuilderException) e.getCause();
+      }
+      throw new DependencyGraphBuilderException("Error building the dependency graph for " + project.getId(),
+          e.getCause());
+    }
+  }
+
+  private static FutureTask<DependencyNode> newTask(final MavenProject project, final DependencyGraphBuilder builder,
+      final DependencyFilter graphFilter, final String filterKey, final GraphStore store)
+  {
+    return new FutureTask<>(new Callable<DependencyNode>()
+      {
+        @Override
+        public DependencyNode call() throws Exception
+        {
+          if (store == null)
+          {
+            return builder.buildDependencyGraph(project, graphFilter);
+          }
+
+          // the store only saves building the graph, one that can't be read or written mustn't fail it
+          String storeKey = null;
+          try
+          {
+            storeKey = storeKey(project, filterKey);
+
+            DependencyNode root = store.load(storeKey);
+            if (root != null)
+            {
+              return root;
+            }
+          }
+          catch (IOException | RuntimeException e)
+          {
+            store.getLog().warn("Couldn't look up the stored dependency graph of " + project.getId() + ": " +
+                e.getMessage());
+          }
+
+          DependencyNode root = builder.buildDependencyGraph(project, graphFilter);
+
+          if (storeKey != null)
+          {
+            try
+            {
+              store.save(storeKey, root);
+            }
+            catch (IOException | RuntimeException e)
+            {
+              store.getLog().warn("Couldn't store the dependency graph of " + project.getId() + ": " +
+                  e.getMessage());
+            }
+          }
+
+          return root;
+        }
+      });
+  }
+
+  /**
+   * Key of the module's graph in the persistent store: the pom chain, the resolved artifacts and the
+   * filter.  The artifacts have to be those of every scope, so the goals with a store require test
+   * resolution; a compile only set would keep a stored graph after a runtime or test dependency changed.
+   */
+  static String storeKey(MavenProject project, String filterKey) throws IOException
+  {
+    return new Fingerprint()
+        .addPomChain(project)
+        .addArtifacts(project.getArtifacts())
+        .add(filterKey)
+        .getValue();
+  }
+
+  /**
+   * The graph with the project as its root.  A graph built for another module with the same inputs
+   * gets a new root node for this one, over the same (read only) children.
+   */
+  static DependencyNode reroot(DependencyNode root, MavenProject project)
+  {
+    Artifact artifact = project.getArtifact();
+    Artifact rootArtifact = root.getArtifact();
+    if (artifact == null || rootArtifact == null ||
+        (artifact.getGroupId().equals(rootArtifact.getGroupId()) &&
+            artifact.getArtifactId().equals(rootArtifact.getArtifactId()) &&
+            artifact.getVersion().equals(rootArtifact.getVersion())))
+    {
+      return root;
+    }
+
+    DefaultDependencyNode node = new DefaultDependencyNode(null, artifact, null, null, null);
+    node.setChildren(root.getChildren());
+
+    return node;
+  }
+
+  /**
+   * The inputs of the resolution, the module's own coordinates aren't part of them
+   */
+  static String makeKey(MavenProject project)
+  {
+    StringBuilder key = new StringBuilder();
+
+    // declaration order matters to the resolver (nearest-wins ties), so it is kept as-is
+    appendDependencies(key.append("dependencies"), project.getDependencies());
+
+    DependencyManagement dependencyManagement = project.getDependencyManagement();
+    if (dependencyManagement != null)
+    {
+      appendDependencies(key.append("|management"), dependencyManagement.getDependencies());
+    }
+
+    return key.toString();
+  }
+
+  private static void appendDependencies(StringBuilder key, List<Dependency> dependencies)
+  {
+    for (Dependency dep : dependencies)
+    {
+      key.append(';')
+          .append(dep.getGroupId()).append(':')
+          .append(dep.getArtifactId()).append(':')
+          .append(dep.getVersion()).append(':')
+          .append(dep.getClassifier()).append(':')
+          .append(dep.getType()).append(':')
+          .append(dep.getScope()).append(':')
+          .append(dep.isOptional()).append(':')
+          .append(dep.getSystemPath());
+
+      for (Exclusion exclusion : dep.getExclusions())
+      {
+        key.append('!').append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.model.Dependency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index over a list of pom dependencies, keyed on (groupId, artifactId, classifier, type),
+ * with a secondary grouping on (groupId, version) for the groupId/version rewrites.
+ *
+ * Build it once per execution, then lookups are constant time instead of a scan of the list.
+ */
+public class DependencyIndex
+{
+  private final Map<Key, Dependency> byCoordinates = new HashMap<>();
+  private final Map<String, List<Dependency>> byGroupVersion = new HashMap<>();
+
+  public DependencyIndex(List<Dependency> dependencies)
+  {
+    for (Dependency dep : dependencies)
+    {
+      add(dep);
+    }
+  }
+
+  public void add(Dependency dep)
+  {
+    byCoordinates.put(new Key(dep.getGroupId(), dep.getArtifactId(), dep.getClassifier(), dep.getType()), dep);
+
+    String gv = dep.getGroupId() + ":" + dep.getVersion();
+    List<Dependency> deps = byGroupVersion.get(gv);
+    if (deps == null)
+    {
+      deps = new ArrayList<>();
+      byGroupVersion.put(gv, deps);
+    }
+    deps.add(dep);
+  }
+
+  public boolean contains(ArtifactRecord artifact)
+  {
+    return byCoordinates.containsKey(
+        new Key(artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier(), artifact.getType()));
+  }
+
+  /**
+   * All the indexed dependencies with the given groupId and version
+   */
+  public List<Dependency> get(String groupId, String version)
+  {
+    List<Dependency> deps = byGroupVersion.get(groupId + ":" + version);
+    if (deps == null)
+    {
+      return Collections.emptyList();
+    }
+
+    return deps;
+  }
+
+  private static class Key
+  {
+    private final String groupId;
+    private final String artifactId;
+    private final String classifier;
+    private final String type;
+    private final int hash;
+
+    Key(String groupId, String artifactId, String classifier, String type)
+    {
+      this.groupId = groupId;
+      this.artifactId = artifactId;
+      // a missing classifier or type means the same as the pom defaults
+      this.classifier = classifier == null ? "" : classifier;
+      this.type = type == null ? "jar" : type;
+
+      int h = groupId == null ? 0 : groupId.hashCode();
+      h = 31 * h + (artifactId == null ? 0 : artifactId.hashCode());
+      h = 31 * h + this.classifier.hashCode();
+      h = 31 * h + this.type.hashCode();
+      hash = h;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this == obj)
+      {
+        return true;
+      }
+      if (!(obj instanceof Key))
+      {
+        return false;
+      }
+
+      Key other = (Key) obj;
+      return hash == other.hash &&
+          equals(groupId, other.groupId) &&
+          equals(artifactId, other.artifactId) &&
+          classifier.equals(other.classifier) &&
+          type.equals(other.type);
+    }
+
+    private static boolean equals(String a, String b)
+    {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
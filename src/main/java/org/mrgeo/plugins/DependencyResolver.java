@@ -0,0 +1,219 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilderException;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Resolves the dependency graph of a module and collects its artifacts.
+ *
+ * The result is kept in the project context, so when several of our goals are bound to the same
+ * module (list-dependencies and generate-pom) the graph is built and visited exactly once.  Graphs
+ * themselves come from the session-wide DependencyGraphCache.
+ *
+ * A resolver can be shared by several threads.
+ */
+public class DependencyResolver
+{
+  private static final String CONTEXT_KEY = ResolvedDependencies.class.getName();
+
+  private final MavenSession session;
+  private final DependencyGraphBuilder dependencyGraphBuilder;
+
+  private DependencyFilter filter = null;
+  private GraphStore store = null;
+  private boolean parallel = false;
+  private boolean memoize = false;
+  private String lockFile = null;
+
+  public DependencyResolver(MavenSession session, DependencyGraphBuilder dependencyGraphBuilder)
+  {
+    this.session = session;
+    this.dependencyGraphBuilder = dependencyGraphBuilder;
+  }
+
+  /**
+   * Prunes the graph and the artifacts, may be null
+   */
+  public DependencyResolver setFilter(DependencyFilter filter)
+  {
+    this.filter = filter == null || filter.isEmpty() ? null : filter;
+    return this;
+  }
+
+  /**
+   * Persistent graph store, may be null.  Its keys hash the project's resolved artifacts, so a goal
+   * setting one has to require test resolution.
+   */
+  public DependencyResolver setStore(GraphStore store)
+  {
+    this.store = store;
+    return this;
+  }
+
+  /**
+   * Walk the graph with a ParallelDependencyTraversal instead of a serial DependencyVisitor
+   */
+  public DependencyResolver setParallel(boolean parallel)
+  {
+    this.parallel = parallel;
+    return this;
+  }
+
+  /**
+   * Visit each distinct subtree only once, see DependencyVisitor.  Only applies to the serial traversal.
+   */
+  public DependencyResolver setMemoize(boolean memoize)
+  {
+    this.memoize = memoize;
+    return this;
+  }
+
+  /**
+   * Lockfile to take the artifacts from while its input hash matches, relative to each module's basedir.
+   * May be null.  The hash covers the project's resolved artifacts, so a goal setting one has to require
+   * test resolution (see LockFile.inputHash).
+   */
+  public DependencyResolver setLockFile(String lockFile)
+  {
+    this.lockFile = lockFile;
+    return this;
+  }
+
+  public ResolvedDependencies resolve(MavenProject project) throws DependencyGraphBuilderException, IOException
+  {
+    return resolve(project, new PhaseMetrics(null, project.getId()));
+  }
+
+  /**
+   * @param metrics records the graph-build and visit phases (or read-lock, when the lockfile is used)
+   */
+  public ResolvedDependencies resolve(MavenProject project, PhaseMetrics metrics)
+      throws DependencyGraphBuilderException, IOException
+  {
+    String contextKey = getContextKey();
+
+    Object cached;
+    synchronized (project)
+    {
+      cached = project.getContextValue(contextKey);
+    }
+
+    if (cached instanceof ResolvedDependencies)
+    {
+      return (ResolvedDependencies) cached;
+    }
+
+    ResolvedDependencies resolved = null;
+    if (lockFile != null)
+    {
+      metrics.start(PhaseMetrics.READ_LOCK);
+      List<ArtifactRecord> locked = LockFile.read(getLockFile(project, lockFile),
+          LockFile.inputHash(project, filter), getRepository(session));
+      metrics.stop();
+
+      if (locked != null)
+      {
+        resolved = new ResolvedDependencies(null, locked, 0, true);
+      }
+    }
+
+    if (resolved == null)
+    {
+      resolved = build(project, metrics);
+    }
+
+    // the context is a plain map, and an aggregator can be resolving a module while that module's own
+    // build is.  Whoever finishes first wins, the results are the same either way.
+    synchronized (project)
+    {
+      cached = project.getContextValue(contextKey);
+      if (cached instanceof ResolvedDependencies)
+      {
+        return (ResolvedDependencies) cached;
+      }
+
+      project.setContextValue(contextKey, resolved);
+    }
+
+    return resolved;
+  }
+
+  /**
+   * Results of differently configured resolvers can't stand in for each other: differently filtered
+   * artifacts, a locked result (which has no graph) or a different skipped count.
+   */
+  String getContextKey()
+  {
+    StringBuilder key = new StringBuilder(CONTEXT_KEY);
+    if (filter != null)
+    {
+      key.append(":").append(filter.getKey());
+    }
+    if (lockFile != null)
+    {
+      key.append("|lock:").append(lockFile);
+    }
+    if (parallel)
+    {
+      key.append("|parallel");
+    }
+    else if (memoize)
+    {
+      key.append("|memoize");
+    }
+
+    return key.toString();
+  }
+
+  /**
+   * Lockfile of the module, the name is relative to its basedir
+   */
+  static File getLockFile(MavenProject project, String name)
+  {
+    File file = new File(name);
+    return file.isAbsolute() ? file : new File(project.getBasedir(), name);
+  }
+
+  /**
+   * The local repository directory, the lockfile paths are relative to it
+   */
+  static File getRepository(MavenSession session)
+  {
+    return session.getLocalRepository() == null ? null : new File(session.getLocalRepository().getBasedir());
+  }
+
+  private ResolvedDependencies build(MavenProject project, PhaseMetrics metrics)
+      throws DependencyGraphBuilderException
+  {
+    metrics.start(PhaseMetrics.GRAPH_BUILD);
+    DependencyNode root =
+        DependencyGraphCache.getInstance(session).buildDependencyGraph(project, dependencyGraphBuilder, filter, store);
+
+    metrics.start(PhaseMetrics.VISIT);
+    List<ArtifactRecord> artifacts;
+    long skipped = 0;
+    if (parallel)
+    {
+      artifacts = ParallelDependencyTraversal.collect(root, filter);
+    }
+    else
+    {
+      DependencyVisitor visitor = new DependencyVisitor(filter, memoize);
+      root.accept(visitor);
+
+      artifacts = visitor.getArtifacts();
+      skipped = visitor.getSkipped();
+    }
+
+    metrics.stop();
+
+    return new ResolvedDependencies(root, artifacts, skipped, false);
+  }
+}
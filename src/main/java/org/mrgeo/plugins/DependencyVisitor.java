@@ -1,55 +1,126 @@
 package org.mrgeo.plugins;
 
-import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.shared.dependency.graph.DependencyNode;
 import org.apache.maven.shared.dependency.graph.traversal.DependencyNodeVisitor;
 
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
 
 public class DependencyVisitor implements DependencyNodeVisitor
 {
-  private Map<String, Artifact> artifacts = new TreeMap<>();
+  // deduped by the records themselves, sorted only once everything has been visited
+  private Set<ArtifactRecord> artifacts = new HashSet<>();
+  private List<ArtifactRecord> sorted = null;
 
-  private String makeName(Artifact artifact)
-  {
-    if (artifact.getFile() != null)
-    {
-      return artifact.getFile().getName();
-    }
-    else
-    {
-      StringBuilder name = new StringBuilder();
+  private final ArtifactFilter filter;
 
-      name.append(artifact.getArtifactId()).append("-").append(artifact.getVersion());
+  // memoized traversal: subtrees already walked, by the coordinates of their root, with their size
+  private final boolean memoize;
+  private final Map<ArtifactRecord, Long> subtrees = new HashMap<>();
+  private final Deque<Frame> stack = new ArrayDeque<>();
+  private long visited = 0;
+  private long skipped = 0;
 
-      if (artifact.getClassifier() != null && artifact.getClassifier().length() > 0)
-      {
-        name.append("-").append(artifact.getClassifier());
-      }
+  public DependencyVisitor()
+  {
+    this(null);
+  }
 
-      if (artifact.isSnapshot() && !name.toString().endsWith("SNAPSHOT"))
-      {
-        name.append("-SNAPSHOT");
-      }
+  /**
+   * @param filter artifacts to include, anything it rejects is skipped along with its whole subtree.
+   *               The root (the project itself) is always included.
+   */
+  public DependencyVisitor(ArtifactFilter filter)
+  {
+    this(filter, false);
+  }
 
-      return name.toString();
+  /**
+   * @param filter  artifacts to include, anything it rejects is skipped along with its whole subtree.
+   *                The root (the project itself) is always included.
+   * @param memoize treat the tree as a DAG: once the subtree below an artifact has been walked, later
+   *                occurrences of the same artifact (same coordinates and scope) are not descended into
+   */
+  public DependencyVisitor(ArtifactFilter filter, boolean memoize)
+  {
+    this.filter = filter;
+    this.memoize = memoize;
+  }
+
+  /**
+   * The visited artifacts, sorted by name
+   */
+  public List<ArtifactRecord> getArtifacts()
+  {
+    if (sorted == null)
+    {
+      sorted = new ArrayList<>(artifacts);
+      Collections.sort(sorted, ArtifactRecord.BY_NAME);
     }
+
+    return sorted;
+  }
+
+  /**
+   * The visited artifacts, unsorted
+   */
+  Set<ArtifactRecord> getArtifactSet()
+  {
+    return artifacts;
   }
 
-  public Collection<Artifact> getArtifacts()
+  /**
+   * Number of nodes the memoized traversal didn't have to visit
+   */
+  public long getSkipped()
   {
-    return artifacts.values();
+    return skipped;
   }
 
 
   @Override
   public boolean visit(DependencyNode dependencyNode)
   {
-    String name = makeName(dependencyNode.getArtifact());
-    artifacts.put(name, dependencyNode.getArtifact());
+    if (filter != null && dependencyNode.getParent() != null && !filter.include(dependencyNode.getArtifact()))
+    {
+      if (memoize)
+      {
+        stack.push(Frame.NONE);
+      }
+      return false;
+    }
+
+    ArtifactRecord record = ArtifactRecord.of(dependencyNode.getArtifact());
+
+    if (memoize)
+    {
+      Long size = subtrees.get(record);
+      if (size != null)
+      {
+        skipped += size;
+
+        stack.push(Frame.NONE);
+        return false;
+      }
+
+      // count the skipped nodes below too, so the size is that of the whole subtree
+      stack.push(new Frame(record, visited + skipped));
+    }
+
+    visited++;
+
+    if (artifacts.add(record))
+    {
+      sorted = null;
+    }
 
     return true;
   }
@@ -57,6 +128,29 @@ public class DependencyVisitor implements DependencyNodeVisitor
   @Override
   public boolean endVisit(DependencyNode dependencyNode)
   {
+    if (memoize)
+    {
+      Frame frame = stack.pop();
+      if (frame.record != null)
+      {
+        subtrees.put(frame.record, visited + skipped - frame.start);
+      }
+    }
+
     return true;
   }
+
+  private static class Frame
+  {
+    static final Frame NONE = new Frame(null, 0);
+
+    final ArtifactRecord record;
+    final long start;
+
+    Frame(ArtifactRecord record, long start)
+    {
+      this.record = record;
+      this.start = start;
+    }
+  }
 }
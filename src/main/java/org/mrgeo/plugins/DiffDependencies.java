@@ -0,0 +1,358 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Goal to compare the dependencies against a baseline, either a listing written by list-dependencies
+ * (e.g. kept from the last release) or a lockfile written by lock-dependencies, whatever its input hash.
+ *
+ * The added, removed and changed (version or scope) artifacts are written to a report, along with the
+ * path that brings each added or changed artifact in, and the build can be failed when there are more
+ * changes than a policy allows.  The report has the same contents when nothing changed, so it can be
+ * used to skip whatever depends on the dependencies.
+ *
+ * @goal diff-dependencies
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class DiffDependencies
+    extends AbstractMojo
+{
+  private static final String PATH_SEPARATOR = " > ";
+
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   *  @parameter default-value="${project}"
+   *  @readonly
+   */
+  private MavenProject project;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * Listing or lockfile to compare the dependencies against.  Nothing is compared if it doesn't exist.
+   * @parameter alias="baseline"
+   *            default-value="${basedir}/dependencies.properties"
+   */
+  private File baseline;
+
+  /**
+   * Separator of the baseline listing's columns
+   * @parameter alias="baselineSeparator"
+   *            default-value="|"
+   */
+  private String baselineSeparator;
+
+  /**
+   * File to write the differences to
+   * @parameter alias="outputFile"
+   *            default-value="${project.build.directory}/dependency-diff.properties"
+   */
+  private File outputFile;
+
+  /**
+   * Fail the build when more artifacts than this were added, no limit when negative
+   * @parameter alias="maxAdded"
+   *            default-value="-1"
+   */
+  private int maxAdded;
+
+  /**
+   * Fail the build when more artifacts than this were removed, no limit when negative
+   * @parameter alias="maxRemoved"
+   *            default-value="-1"
+   */
+  private int maxRemoved;
+
+  /**
+   * Fail the build when more artifacts than this changed version or scope, no limit when negative
+   * @parameter alias="maxChanged"
+   *            default-value="-1"
+   */
+  private int maxChanged;
+
+  /**
+   * Lockfile written by lock-dependencies, relative to the basedir.  While its input hash matches,
+   * the dependencies are taken from it instead of building the dependency graph, and the report has no
+   * paths.
+   * @parameter alias="lockFile"
+   */
+  private String lockFile;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  /**
+   * The path from the root to the first node of each of the artifacts (by DependencyDiff key), in
+   * groupId:artifactId:version steps.  The walk stops as soon as they're all found.
+   */
+  static Map<String, String> findPaths(DependencyNode root, Set<String> keys)
+  {
+    Map<String, String> paths = new HashMap<>();
+    if (root == null || keys.isEmpty())
+    {
+      return paths;
+    }
+
+    // breadth first, so the path is one of the shortest
+    Deque<DependencyNode> queue = new ArrayDeque<>(root.getChildren());
+    while (!queue.isEmpty() && paths.size() < keys.size())
+    {
+      DependencyNode node = queue.poll();
+
+      String key = DependencyDiff.key(ArtifactRecord.of(node.getArtifact()));
+      if (keys.contains(key) && !paths.containsKey(key))
+      {
+        List<String> steps = new ArrayList<>();
+        for (DependencyNode step = node; step != null && step.getParent() != null; step = step.getParent())
+        {
+          steps.add(step.getArtifact().getGroupId() + ":" + step.getArtifact().getArtifactId() + ":" +
+              step.getArtifact().getVersion());
+        }
+
+        StringBuilder path = new StringBuilder();
+        for (int s = steps.size() - 1; s >= 0; s--)
+        {
+          path.append(steps.get(s));
+          if (s > 0)
+          {
+            path.append(PATH_SEPARATOR);
+          }
+        }
+
+        paths.put(key, path.toString());
+      }
+
+      queue.addAll(node.getChildren());
+    }
+
+    return paths;
+  }
+
+  public void execute()
+      throws MojoExecutionException, MojoFailureException
+  {
+    Log log = getLog();
+
+    if (!baseline.isFile())
+    {
+      log.info("No baseline, nothing to compare: " + baseline);
+      return;
+    }
+
+    DependencyDiff diff;
+    try
+    {
+      PhaseMetrics metrics = new PhaseMetrics("diff-dependencies", project.getId());
+
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(new DependencyFilter(includeScopes, excludeScopes, includes, excludes))
+          .setLockFile(lockFile)
+          .resolve(project, metrics);
+
+      metrics.start(PhaseMetrics.READ_BASELINE);
+      List<ArtifactRecord> before = LockFile.isLockFile(baseline) ?
+          LockFile.read(baseline, null, DependencyResolver.getRepository(session)) :
+          ListingReader.read(baseline, baselineSeparator);
+      if (before == null)
+      {
+        throw new IOException("Empty lockfile: " + baseline);
+      }
+
+      metrics.start(PhaseMetrics.MERGE);
+      diff = new DependencyDiff(before, resolved.getArtifacts());
+
+      Set<String> keys = new HashSet<>();
+      for (ArtifactRecord artifact : diff.getAdded())
+      {
+        keys.add(DependencyDiff.key(artifact));
+      }
+      for (ArtifactRecord[] artifact : diff.getChanged())
+      {
+        keys.add(DependencyDiff.key(artifact[1]));
+      }
+      Map<String, String> paths = findPaths(resolved.getRoot(), keys);
+
+      log.info("Comparing against " + baseline + ", writing to: " + outputFile);
+
+      metrics.start(PhaseMetrics.SERIALIZE);
+      OutputFile output = new OutputFile(outputFile);
+      try
+      {
+        RecordWriter writer = new RecordWriter(output.openChannel(), "|", StandardCharsets.UTF_8);
+        try
+        {
+          writeReport(writer, diff, paths);
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        metrics.start(PhaseMetrics.WRITE);
+        output.commit();
+      }
+      finally
+      {
+        output.discard();
+      }
+      metrics.stop();
+
+      if (diff.isEmpty())
+      {
+        log.info("  no changes");
+      }
+      else
+      {
+        log.info("  " + diff.getAdded().size() + " added, " + diff.getRemoved().size() + " removed, " +
+            diff.getChanged().size() + " changed");
+      }
+
+      PhaseMetrics.register(session, metrics);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "error", "error");
+    }
+
+    List<String> exceeded = new ArrayList<>();
+    if (maxAdded >= 0 && diff.getAdded().size() > maxAdded)
+    {
+      exceeded.add(diff.getAdded().size() + " added (at most " + maxAdded + ")");
+    }
+    if (maxRemoved >= 0 && diff.getRemoved().size() > maxRemoved)
+    {
+      exceeded.add(diff.getRemoved().size() + " removed (at most " + maxRemoved + ")");
+    }
+    if (maxChanged >= 0 && diff.getChanged().size() > maxChanged)
+    {
+      exceeded.add(diff.getChanged().size() + " changed (at most " + maxChanged + ")");
+    }
+
+    if (!exceeded.isEmpty())
+    {
+      throw new MojoFailureException("Too many dependency changes since " + baseline + ": " + exceeded +
+          ", see " + outputFile);
+    }
+  }
+
+  private static void writeReport(RecordWriter writer, DependencyDiff diff, Map<String, String> paths)
+      throws IOException
+  {
+    writer.line("# Summary: ");
+    writer.line("#  Added | Removed | Changed");
+    writer.field().append(diff.getAdded().size());
+    writer.field().append(diff.getRemoved().size());
+    writer.field().append(diff.getChanged().size());
+    writer.endRecord();
+
+    writer.line("\n\n# Added: ");
+    writer.line("#  GroupId | ArtifactId | Version | Classifier | Type | Scope | Path");
+    for (ArtifactRecord artifact : diff.getAdded())
+    {
+      writeArtifact(writer, artifact);
+      writer.field(paths.containsKey(DependencyDiff.key(artifact)) ? paths.get(DependencyDiff.key(artifact)) : "");
+      writer.endRecord();
+    }
+
+    writer.line("\n\n# Removed: ");
+    writer.line("#  GroupId | ArtifactId | Version | Classifier | Type | Scope");
+    for (ArtifactRecord artifact : diff.getRemoved())
+    {
+      writeArtifact(writer, artifact);
+      writer.endRecord();
+    }
+
+    writer.line("\n\n# Changed: ");
+    writer.line("#  GroupId | ArtifactId | Version | Classifier | Type | Scope | Baseline Version | " +
+        "Baseline Scope | Path");
+    for (ArtifactRecord[] artifact : diff.getChanged())
+    {
+      writeArtifact(writer, artifact[1]);
+      writer.field(artifact[0].getVersion())
+          .field().append(artifact[0].getScope());
+      writer.field(paths.containsKey(DependencyDiff.key(artifact[1])) ?
+          paths.get(DependencyDiff.key(artifact[1])) : "");
+      writer.endRecord();
+    }
+  }
+
+  private static void writeArtifact(RecordWriter writer, ArtifactRecord artifact)
+  {
+    writer.field(artifact.getGroupId())
+        .field(artifact.getArtifactId())
+        .field(artifact.getVersion())
+        .field(artifact.getClassifier() != null ? artifact.getClassifier() : "")
+        .field(artifact.getType())
+        .field().append(artifact.getScope());
+  }
+}
@@ -0,0 +1,359 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Goal to find the classes in more than one jar of the dependencies, and the packages split across jars.
+ *
+ * Duplicates are grouped by pair of jars and told apart by their CRC and size: identical copies are only
+ * counted, while differing copies are listed one by one, since which one gets loaded depends on the
+ * classpath order.  The first jar of a pair is the one ahead on the classpath.
+ *
+ * The jars are read the same way index-classes reads them, through their zip central directory only, in
+ * parallel, and cached between builds (see JarIndexCache).
+ *
+ * @goal duplicate-classes
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class DuplicateClasses
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   *  @parameter default-value="${project}"
+   *  @readonly
+   */
+  private MavenProject project;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * File to write the report to
+   * @parameter alias="outputFile"
+   *            default-value="${project.build.directory}/duplicate-classes.properties"
+   */
+  private File outputFile;
+
+  /**
+   * Number of jars read at the same time
+   * @parameter alias="threads"
+   *            default-value="4"
+   */
+  private int threads;
+
+  /**
+   * Where the index of the local repository is kept between builds.  Set it to a file outside
+   * the build directory (e.g. under ~/.m2) to share it between modules and checkouts.
+   * @parameter alias="repositoryIndexFile"
+   *            default-value="${project.build.directory}/pomtools-repository.index"
+   */
+  private File repositoryIndexFile;
+
+  /**
+   * Where the classes of each jar are kept between builds, in the build directory unless it is set to
+   * a shared file (e.g. under ~/.m2)
+   * @parameter alias="jarIndexCacheFile"
+   *            default-value="${project.build.directory}/pomtools-jar-index.cache"
+   */
+  private File jarIndexCacheFile;
+
+  /**
+   * Lockfile written by lock-dependencies, relative to the basedir.  While its input hash matches,
+   * the dependencies are taken from it instead of building the dependency graph.
+   * @parameter alias="lockFile"
+   */
+  private String lockFile;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  /**
+   * The duplicates between two jars
+   */
+  static class Conflict
+  {
+    int identical = 0;
+    final List<String> different = new ArrayList<>();
+  }
+
+  /**
+   * The duplicate classes of the jars, by pair of jars (their positions, first one ahead on the classpath)
+   */
+  static Map<Long, Conflict> findConflicts(List<File> jars, Map<File, JarDirectory> directories)
+  {
+    int total = 0;
+    for (JarDirectory directory : directories.values())
+    {
+      total += directory.size();
+    }
+
+    // class -> first copy, as jar position << 32 | entry; only the duplicated classes get a list of copies
+    Map<String, Long> first = new HashMap<>(Math.max(16, total * 4 / 3));
+    Map<String, List<Long>> copies = new TreeMap<>();
+
+    for (int i = 0; i < jars.size(); i++)
+    {
+      JarDirectory directory = directories.get(jars.get(i));
+      for (int c = 0; c < directory.size(); c++)
+      {
+        long copy = ((long) i << 32) | c;
+
+        Long previous = first.get(directory.getName(c));
+        if (previous == null)
+        {
+          first.put(directory.getName(c), copy);
+        }
+        else
+        {
+          List<Long> list = copies.get(directory.getName(c));
+          if (list == null)
+          {
+            list = new ArrayList<>(2);
+            list.add(previous);
+            copies.put(directory.getName(c), list);
+          }
+          list.add(copy);
+        }
+      }
+    }
+
+    Map<Long, Conflict> conflicts = new TreeMap<>();
+    for (Map.Entry<String, List<Long>> duplicate : copies.entrySet())
+    {
+      List<Long> list = duplicate.getValue();
+      for (int a = 0; a < list.size(); a++)
+      {
+        int jarA = (int) (list.get(a) >>> 32);
+        JarDirectory directoryA = directories.get(jars.get(jarA));
+        int entryA = (int) (long) list.get(a);
+
+        for (int b = a + 1; b < list.size(); b++)
+        {
+          int jarB = (int) (list.get(b) >>> 32);
+          JarDirectory directoryB = directories.get(jars.get(jarB));
+          int entryB = (int) (long) list.get(b);
+
+          long pair = ((long) jarA << 32) | jarB;
+          Conflict conflict = conflicts.get(pair);
+          if (conflict == null)
+          {
+            conflict = new Conflict();
+            conflicts.put(pair, conflict);
+          }
+
+          if (directoryA.getCrc(entryA) == directoryB.getCrc(entryB) &&
+              directoryA.getSize(entryA) == directoryB.getSize(entryB))
+          {
+            conflict.identical++;
+          }
+          else
+          {
+            conflict.different.add(duplicate.getKey());
+          }
+        }
+      }
+    }
+
+    return conflicts;
+  }
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    try
+    {
+      PhaseMetrics metrics = new PhaseMetrics("duplicate-classes", project.getId());
+
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(new DependencyFilter(includeScopes, excludeScopes, includes, excludes))
+          .setLockFile(lockFile)
+          .resolve(project, metrics);
+
+      metrics.start(PhaseMetrics.INDEX);
+      Map<String, File> jars = IndexClasses.findJars(project, resolved,
+          LocalRepositoryIndex.getInstance(session, repositoryIndexFile, log), log);
+
+      log.info("Looking for duplicate classes in " + jars.size() + " jars, writing to: " + outputFile);
+
+      metrics.start(PhaseMetrics.SCAN);
+      List<File> files = new ArrayList<>(jars.values());
+      Map<File, JarDirectory> directories =
+          JarIndexCache.getInstance(session, jarIndexCacheFile, log).directories(files, threads);
+
+      metrics.start(PhaseMetrics.MERGE);
+      Map<Long, Conflict> conflicts = findConflicts(files, directories);
+      Map<String, List<Integer>> packages = IndexClasses.packages(files, directories);
+
+      metrics.start(PhaseMetrics.SERIALIZE);
+      List<String> names = new ArrayList<>(jars.keySet());
+
+      OutputFile output = new OutputFile(outputFile);
+      try
+      {
+        RecordWriter writer = new RecordWriter(output.openChannel(), "|", StandardCharsets.UTF_8);
+        try
+        {
+          writeReport(writer, names, conflicts, packages);
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        metrics.start(PhaseMetrics.WRITE);
+        output.commit();
+      }
+      finally
+      {
+        output.discard();
+      }
+      metrics.stop();
+
+      int identical = 0;
+      int different = 0;
+      for (Map.Entry<Long, Conflict> conflict : conflicts.entrySet())
+      {
+        identical += conflict.getValue().identical;
+        different += conflict.getValue().different.size();
+
+        if (!conflict.getValue().different.isEmpty())
+        {
+          log.warn(names.get((int) (conflict.getKey() >>> 32)) + " and " +
+              names.get((int) (long) conflict.getKey()) + " have " + conflict.getValue().different.size() +
+              " differing classes");
+        }
+      }
+
+      log.info("  " + conflicts.size() + " conflicting jar pairs, " + identical + " identical and " + different +
+          " differing duplicate classes");
+
+      PhaseMetrics.register(session, metrics);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "error", "error");
+    }
+  }
+
+  private static void writeReport(RecordWriter writer, List<String> names, Map<Long, Conflict> conflicts,
+      Map<String, List<Integer>> packages) throws IOException
+  {
+    writer.line("# Conflicts: ");
+    writer.line("#  Jar | Other Jar | Identical | Different");
+
+    for (Map.Entry<Long, Conflict> conflict : conflicts.entrySet())
+    {
+      writer.field(names.get((int) (conflict.getKey() >>> 32)))
+          .field(names.get((int) (long) conflict.getKey()))
+          .field().append(conflict.getValue().identical);
+      writer.field().append(conflict.getValue().different.size());
+      writer.endRecord();
+    }
+
+    writer.line("\n\n# Different Classes: ");
+    writer.line("#  Jar | Other Jar | Class");
+
+    for (Map.Entry<Long, Conflict> conflict : conflicts.entrySet())
+    {
+      for (String cls : conflict.getValue().different)
+      {
+        writer.field(names.get((int) (conflict.getKey() >>> 32)))
+            .field(names.get((int) (long) conflict.getKey()))
+            .field(cls);
+        writer.endRecord();
+      }
+    }
+
+    writer.line("\n\n# Split Packages: ");
+    writer.line("#  Package | Jars");
+
+    for (Map.Entry<String, List<Integer>> pkg : packages.entrySet())
+    {
+      if (pkg.getValue().size() < 2)
+      {
+        continue;
+      }
+
+      writer.field(pkg.getKey());
+
+      StringBuilder holders = writer.field();
+      for (int h = 0; h < pkg.getValue().size(); h++)
+      {
+        if (h > 0)
+        {
+          holders.append(',');
+        }
+        holders.append(names.get(pkg.getValue().get(h)));
+      }
+
+      writer.endRecord();
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilderException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Generates the psuedo-effective-pom of a module: the model with every resolved dependency listed
+ * explicitly, the groupId/version rewritten, and fully qualified paths replaced with ${} expressions.
+ *
+ * One generator can be shared by many modules (and threads), the rewritten parent references and
+ * dependencyManagement are then worked out once per parent instead of once per child.
+ */
+public class EffectivePomGenerator
+{
+  private final DependencyResolver resolver;
+  private final Log log;
+
+  private boolean rewriteParent = false;
+
+  // rewritten parents, by parent project and rewrite
+  private final ConcurrentMap<String, ParentRewrite> parents = new ConcurrentHashMap<>();
+
+  /**
+   * A parent pom as its rewritten children see it: the <parent> reference, with the groupId/version
+   * rewrite applied when the parent is released along with them, and its dependencyManagement with the
+   * same rewrite.  Both are read only once built.
+   */
+  static class ParentRewrite
+  {
+    final Parent reference;
+    final DependencyManagement dependencyManagement;
+
+    ParentRewrite(MavenProject parent, String originalGroupId, String originalVersion, String groupId,
+        String version)
+    {
+      // like the dependencies, the parent is rewritten when it has the module's original groupId and version
+      boolean rewritten = originalGroupId.equals(parent.getGroupId()) && originalVersion.equals(parent.getVersion());
+
+      reference = new Parent();
+      reference.setGroupId(rewritten ? groupId : parent.getGroupId());
+      reference.setArtifactId(parent.getArtifactId());
+      reference.setVersion(rewritten ? version : parent.getVersion());
+
+      DependencyManagement management = parent.getModel().getDependencyManagement();
+      if (management != null)
+      {
+        management = management.clone();
+        for (Dependency dep : new DependencyIndex(management.getDependencies()).get(originalGroupId, originalVersion))
+        {
+          dep.setGroupId(groupId);
+          dep.setVersion(version);
+        }
+      }
+      dependencyManagement = management;
+    }
+  }
+
+  public EffectivePomGenerator(DependencyResolver resolver, Log log)
+  {
+    this.resolver = resolver;
+    this.log = log;
+  }
+
+  /**
+   * Give the <parent> reference the same groupId/version rewrite as the module (see ParentRewrite), for
+   * a reactor whose parent is released along with it.  Otherwise the reference only takes the parent
+   * project's version.
+   */
+  public EffectivePomGenerator setRewriteParent(boolean rewriteParent)
+  {
+    this.rewriteParent = rewriteParent;
+    return this;
+  }
+
+  public void generate(MavenProject project, String groupId, String artifactId, String version, OutputFile output)
+      throws IOException, DependencyGraphBuilderException
+  {
+    generate(project, groupId, artifactId, version, output, new PhaseMetrics(null, project.getId()));
+  }
+
+  /**
+   * @param metrics records the graph-build, visit, merge, serialize and write phases
+   */
+  public void generate(MavenProject project, String groupId, String artifactId, String version, OutputFile output,
+      PhaseMetrics metrics) throws IOException, DependencyGraphBuilderException
+  {
+    // work on a copy, the project's own model is shared with every other plugin in the build (and
+    // read concurrently by them in a parallel build)
+    Model model = project.getModel().clone();
+
+    String originalGroupId = model.getGroupId();
+    String originalArtifactId = model.getArtifactId();
+    String originalVersion = model.getVersion();
+
+    if (!groupId.equals(originalGroupId))
+    {
+      log.info("groupId: " + groupId);
+      model.setGroupId(groupId);
+    }
+
+    if (!artifactId.equals(originalArtifactId))
+    {
+      log.info("artifactId: " + artifactId);
+      model.setArtifactId(artifactId);
+    }
+
+    if (!version.equals(originalVersion))
+    {
+      log.info("version: " + version);
+      model.setVersion(version);
+    }
+
+    if (project.hasParent())
+    {
+      Parent mParent = model.getParent();
+      if (mParent != null)
+      {
+        if (rewriteParent)
+        {
+          // only the coordinates are shared, the relativePath stays the child's own
+          Parent parent = getParent(project.getParent(), originalGroupId, originalVersion, groupId, version).reference;
+          mParent.setGroupId(parent.getGroupId());
+          mParent.setArtifactId(parent.getArtifactId());
+          mParent.setVersion(parent.getVersion());
+        }
+        else
+        {
+          mParent.setVersion(project.getParent().getVersion());
+        }
+
+        log.info("parent: " + mParent.toString());
+      }
+    }
+
+    //model.setProperties(null);
+
+    String basedir = model.getProjectDirectory().toString();
+
+    Build build = model.getBuild();
+    String target = build.getDirectory();
+
+    // get all the dependencies
+    ResolvedDependencies resolved = resolver.resolve(project, metrics);
+
+    if (resolved.isLocked())
+    {
+      log.info("  dependencies taken from the lockfile");
+    }
+
+    if (resolved.getSkippedNodes() > 0)
+    {
+      log.info("  memoized traversal skipped " + resolved.getSkippedNodes() + " nodes");
+    }
+
+    // add any missing dependencies from the graph to our list.  These will be all inherited
+    // dependencies not explicitly referenced out in the pom
+    metrics.start(PhaseMetrics.MERGE);
+    List<Dependency> dependencies = model.getDependencies();
+    DependencyIndex index = mergeDependencies(dependencies, resolved.getArtifacts());
+
+    // OK, now find any org.mrgeo dependencies and change the group version accordingly
+    for (Dependency dep: index.get(originalGroupId, originalVersion))
+    {
+      dep.setGroupId(groupId);
+      dep.setVersion(version);
+    }
+
+    model.setDependencies(dependencies);
+
+    // no need for dependencyManagement, the dependency section includes all dependencies.
+    // ignore this if we don't have parents (A top-level POM)
+    if (project.hasParent())
+    {
+      model.setDependencyManagement(null);
+    }
+    else
+    {
+      // the top-level pom is the parent of the others, its rewrite is shared with them
+      model.setDependencyManagement(
+          getParent(project, originalGroupId, originalVersion, groupId, version).dependencyManagement);
+    }
+
+    log.info("Writing to: " + output.getFile());
+
+    // the placeholders are substituted as the pom is serialized, in the same pass
+    metrics.start(PhaseMetrics.SERIALIZE);
+    boolean replaced;
+    try
+    {
+      long length;
+      try (OutputStream fos = output.open())
+      {
+        length = writePom(model, basedir, target, fos);
+      }
+      metrics.stop();
+
+      log.info("  pom length: " + length);
+
+      metrics.start(PhaseMetrics.WRITE);
+      replaced = output.commit();
+      metrics.stop();
+    }
+    finally
+    {
+      output.discard();
+    }
+
+    if (!replaced)
+    {
+      log.info("  unchanged, left as is");
+    }
+  }
+
+  /**
+   * Merges the resolved artifacts into the pom dependencies: each artifact that isn't already a
+   * dependency (by groupId, artifactId, classifier and type) is appended.  The project itself (the
+   * artifact without a scope) is skipped.
+   *
+   * @return the index of the merged dependencies
+   */
+  static DependencyIndex mergeDependencies(List<Dependency> dependencies, List<ArtifactRecord> artifacts)
+  {
+    DependencyIndex index = new DependencyIndex(dependencies);
+    for (ArtifactRecord artifact : artifacts)
+    {
+      if (artifact.getScope() != null && !index.contains(artifact))
+      {
+        Dependency dep = new Dependency();
+        dep.setArtifactId(artifact.getArtifactId());
+        dep.setGroupId(artifact.getGroupId());
+        dep.setVersion(artifact.getVersion());
+        dep.setClassifier(artifact.getClassifier() == null || artifact.getClassifier().isEmpty() ? null :
+            artifact.getClassifier());
+        dep.setScope(artifact.getScope());
+        dep.setType(artifact.getType());
+        dep.setVersion(artifact.getVersion());
+
+        dependencies.add(dep);
+        index.add(dep);
+      }
+    }
+
+    return index;
+  }
+
+  /**
+   * Serializes the model, replacing the fully qualified paths with their ${} equivalent
+   *
+   * @return the number of characters written
+   */
+  static long writePom(Model model, String basedir, String target, OutputStream out) throws IOException
+  {
+    String targettag = "<directory>" + target + "</directory>";
+
+    // one pass over the serialized pom: the <directory> tag for the target directory keeps its
+    // path (relative to the basedir), otherwise the fully qualified paths are replaced with the
+    // ${} equivalent.  The order matters, the first pattern matching at a position wins.
+    String[] patterns = new String[]{targettag, target, basedir};
+    String[] replacements = new String[]{
+        "<directory>" + target.replace(basedir, "${project.basedir}") + "</directory>",
+        "${project.build.directory}",
+        "${project.basedir}"};
+
+    PlaceholderWriter pw = new PlaceholderWriter(new BufferedWriter(new OutputStreamWriter(out)),
+        patterns, replacements);
+    new MavenXpp3Writer().write(pw, model);
+
+    pw.close();
+
+    return pw.getLength();
+  }
+
+  /**
+   * The rewrite of a parent, worked out once for all the children (and the parent itself) that share it
+   */
+  ParentRewrite getParent(MavenProject parentProject, String originalGroupId, String originalVersion,
+      String groupId, String version)
+  {
+    String key = parentProject.getId() + "|" + originalGroupId + ":" + originalVersion + "|" + groupId + ":" +
+        version;
+
+    ParentRewrite parent = parents.get(key);
+    if (parent == null)
+    {
+      parent = new ParentRewrite(parentProject, originalGroupId, originalVersion, groupId, version);
+
+      ParentRewrite existing = parents.putIfAbsent(key, parent);
+      if (existing != null)
+      {
+        parent = existing;
+      }
+    }
+
+    return parent;
+  }
+}
@@ -0,0 +1,133 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+/**
+ * SHA-256 digest over the inputs of a goal execution: pom files, resolved artifacts and mojo
+ * parameters.  Two executions with the same fingerprint produce the same output.
+ */
+public class Fingerprint
+{
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final MessageDigest digest;
+
+  public Fingerprint()
+  {
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  public Fingerprint add(String value)
+  {
+    if (value != null)
+    {
+      digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // terminate every value, so ("ab", "c") and ("a", "bc") don't collide
+    digest.update((byte) 0);
+
+    return this;
+  }
+
+  public Fingerprint add(File file) throws IOException
+  {
+    byte[] buffer = new byte[8192];
+    try (InputStream is = new FileInputStream(file))
+    {
+      int read;
+      while ((read = is.read(buffer)) > 0)
+      {
+        digest.update(buffer, 0, read);
+      }
+    }
+
+    digest.update((byte) 0);
+
+    return this;
+  }
+
+  /**
+   * Adds the contents of the project's pom and every parent pom above it.  Parents that weren't read
+   * from disk (i.e. came from a repository) are identified by their coordinates instead.
+   */
+  public Fingerprint addPomChain(MavenProject project) throws IOException
+  {
+    for (MavenProject p = project; p != null; p = p.getParent())
+    {
+      File pom = p.getFile();
+      if (pom != null && pom.isFile())
+      {
+        add(pom);
+      }
+      else
+      {
+        add(p.getId());
+      }
+    }
+
+    return this;
+  }
+
+  /**
+   * Adds the coordinates and scope of each artifact.  Snapshots can change without their coordinates
+   * changing, so their resolved (timestamped) version and the contents of their files are added as well.
+   * Nothing machine specific goes in, the value is the same wherever the same artifacts were resolved.
+   * A reactor module's classes directory has no contents to add, it is identified by its version only.
+   *
+   * The artifacts should be those of every scope (the goal requiring test resolution), a compile only
+   * set would miss a changed runtime, provided or test dependency.
+   */
+  public Fingerprint addArtifacts(Collection<Artifact> artifacts) throws IOException
+  {
+    for (Artifact artifact : artifacts)
+    {
+      add(artifact.getId());
+      add(artifact.getScope());
+
+      if (artifact.isSnapshot())
+      {
+        add(artifact.getVersion());
+
+        File file = artifact.getFile();
+        if (file != null && file.isFile())
+        {
+          add(file);
+        }
+      }
+    }
+
+    return this;
+  }
+
+  public String getValue()
+  {
+    byte[] bytes = digest.digest();
+
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++)
+    {
+      hex[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+      hex[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+    }
+
+    return new String(hex);
+  }
+}
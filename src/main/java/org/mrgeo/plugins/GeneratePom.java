@@ -16,9 +16,7 @@ package org.mrgeo.plugins;
  * limitations under the License.
  */
 
-import org.apache.maven.artifact.Artifact;
-import org.apache.maven.model.*;
-import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
@@ -34,8 +32,9 @@ import java.util.Properties;
  * Goal to export a psuedo-effective-pom.
  *
  * @goal generate-pom
- * @requiresDependencyResolution compile
+ * @requiresDependencyResolution test
  * @phase process-sources
+ * @threadSafe
  */
 public class GeneratePom
     extends AbstractMojo
@@ -47,6 +46,20 @@ public class GeneratePom
    */
   private MavenProject project;
 
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * Version of this plugin, part of the incremental fingerprint so an upgraded plugin rewrites its output
+   * @parameter default-value="${plugin.version}"
+   * @readonly
+   */
+  private String pluginVersion;
+
   /**
    * Project dir
    * @parameter default-value="${basedir}"
@@ -88,157 +101,138 @@ private String artifactId;
  */
 private String version;
 
-    public void execute()
-        throws MojoExecutionException
-    {
-      Log log = getLog();
-
-      try
-      {
-        MavenXpp3Writer writer = new MavenXpp3Writer();
-
-        Model model = project.getModel();
-
-        String originalGroupId = model.getGroupId();
-        String originalArtifactId = model.getArtifactId();
-        String originalVersion = model.getVersion();
-
-        if (!groupId.equals(originalGroupId))
-        {
-          log.info("groupId: " + groupId);
-          model.setGroupId(groupId);
-        }
-
-        if (!artifactId.equals(originalArtifactId))
-        {
-          log.info("artifactId: " + artifactId);
-          model.setArtifactId(artifactId);
-        }
+/**
+ * Skip the goal entirely when the poms, resolved artifacts and parameters are unchanged since the
+ * last run.  The goal requires test resolution so the artifacts of every scope are compared, not
+ * just the compile classpath.
+ * @parameter alias="incremental"
+ *            default-value="false"
+ */
+private boolean incremental;
 
-        if (!version.equals(originalVersion))
-        {
-          log.info("version: " + version);
-          model.setVersion(version);
-        }
+/**
+ * Directory of the persistent dependency graph cache, shared between builds.  Unset disables it.
+ * @parameter alias="graphCacheDirectory"
+ */
+private File graphCacheDirectory;
 
-        if (project.hasParent())
-        {
-          String parentVersion = project.getParent().getVersion();
+/**
+ * Maximum size of the dependency graph cache, in megabytes
+ * @parameter alias="graphCacheSize"
+ *            default-value="256"
+ */
+private long graphCacheSize;
 
-          Parent mParent = model.getParent();
-          if (mParent != null)
-          {
-            mParent.setVersion(parentVersion);
+/**
+ * Comma separated scopes to include, all scopes when empty
+ * @parameter alias="includeScopes"
+ */
+private String includeScopes;
 
-            log.info("parent: " + mParent.toString());
-          }
-        }
+/**
+ * Comma separated scopes to exclude
+ * @parameter alias="excludeScopes"
+ */
+private String excludeScopes;
 
-        //model.setProperties(null);
+/**
+ * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+ * dependencies to include, all dependencies when empty
+ * @parameter alias="includes"
+ */
+private String includes;
 
-        String basedir = model.getProjectDirectory().toString();
+/**
+ * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+ * dependencies to exclude
+ * @parameter alias="excludes"
+ */
+private String excludes;
 
-        Build build = model.getBuild();
-        String target = build.getDirectory();
+/**
+ * Walk the dependency graph in parallel, for very large (verbose) graphs
+ * @parameter alias="parallelTraversal"
+ *            default-value="false"
+ */
+private boolean parallelTraversal;
 
-        // get all the dependencies
-        org.apache.maven.shared.dependency.graph.DependencyNode root =
-            dependencyGraphBuilder.buildDependencyGraph( project, null );
+/**
+ * Walk each distinct subtree of the dependency graph only once, treating it as a DAG.  Not used
+ * together with parallelTraversal.
+ * @parameter alias="memoizeTraversal"
+ *            default-value="false"
+ */
+private boolean memoizeTraversal;
 
-        DependencyVisitor visitor = new DependencyVisitor();
-        root.accept(visitor);
+/**
+ * File to write the time and allocations of each phase of the execution to, none when unset
+ * @parameter alias="metricsFile"
+ */
+private File metricsFile;
 
-        // add any missing dependencies from the graph to our list.  These will be all inherited
-        // dependencies not explicitly referenced out in the pom
-        List<Dependency> dependencies = model.getDependencies();
-        for (Artifact artifact : visitor.getArtifacts())
-        {
-          if (contains(artifact, dependencies))
-          {
-            Dependency dep = new Dependency();
-            dep.setArtifactId(artifact.getArtifactId());
-            dep.setGroupId(artifact.getGroupId());
-            dep.setVersion(artifact.getVersion());
-            dep.setClassifier(artifact.getClassifier());
-            dep.setScope(artifact.getScope());
-            dep.setType(artifact.getType());
-            dep.setVersion(artifact.getVersion());
-
-            dependencies.add(dep);
-          }
-        }
+/**
+ * Lockfile written by lock-dependencies, relative to the basedir.  While its input hash matches,
+ * the dependencies are taken from it instead of building the dependency graph.
+ * @parameter alias="lockFile"
+ */
+private String lockFile;
 
-        // OK, now find any org.mrgeo dependencies and change the group version accordingly
-        for (Dependency dep: dependencies)
-        {
-          if (dep.getGroupId().equals(originalGroupId) && dep.getVersion().equals(originalVersion))
-          {
-            dep.setGroupId(groupId);
-            dep.setVersion(version);
-          }
-        }
+    public void execute()
+        throws MojoExecutionException
+    {
+      Log log = getLog();
 
-        model.setDependencies(dependencies);
+      try
+      {
+        OutputFile output = new OutputFile(outputFile);
+        DependencyFilter filter = new DependencyFilter(includeScopes, excludeScopes, includes, excludes);
 
-        // no need for dependencyManagement, the dependency section includes all dependencies.
-        // ignore this if we don't have parents (A top-level POM)
-        if (project.hasParent())
+        String fingerprint = null;
+        if (incremental)
         {
-          model.setDependencyManagement(null);
-        }
-        else
-        {
-          DependencyManagement dependencyManagement = model.getDependencyManagement();
-          List<Dependency> dependencyManagements = dependencyManagement.getDependencies();
-          for (Dependency dep: dependencyManagements)
+          fingerprint = new Fingerprint()
+              .addPomChain(project)
+              .addArtifacts(project.getArtifacts())
+              .add("generate-pom")
+              .add(pluginVersion)
+              .add(outputFile.getAbsolutePath())
+              .add(groupId)
+              .add(artifactId)
+              .add(version)
+              .add(filter.getKey())
+              .getValue();
+
+          if (output.isUpToDate(fingerprint))
           {
-            if (dep.getGroupId().equals(originalGroupId) && dep.getVersion().equals(originalVersion))
-            {
-              dep.setGroupId(groupId);
-              dep.setVersion(version);
-            }
+            log.info("Up to date: " + outputFile);
+            return;
           }
-          model.setDependencyManagement(dependencyManagement);
         }
 
-        StringWriter stringWriter = new StringWriter();
-        writer.write(stringWriter, model);
-
-        String pom = stringWriter.toString();
-
-        String saveme = "___save_me___";
-        String targettag = "<directory>" + target + "</directory>";
-
-        // make a placeholder for the <directory> tag for the target directory
-        pom = pom.replace(targettag, saveme);
+        GraphStore store = graphCacheDirectory == null ? null :
+            new GraphStore(graphCacheDirectory, graphCacheSize * 1024 * 1024, log);
 
-        // this simply replace the fully qualified paths with the ${} equivalent
-        pom = pom.replace(target, "${project.build.directory}");
+        DependencyResolver resolver = new DependencyResolver(session, dependencyGraphBuilder)
+            .setFilter(filter)
+            .setStore(store)
+            .setParallel(parallelTraversal)
+            .setMemoize(memoizeTraversal)
+            .setLockFile(lockFile);
 
-        // now undo the tag for the target directory, otherwise
-        pom = pom.replace(saveme, targettag);
+        PhaseMetrics metrics = new PhaseMetrics("generate-pom", project.getId());
 
-        pom = pom.replace(basedir, "${project.basedir}");
+        new EffectivePomGenerator(resolver, log).generate(project, groupId, artifactId, version, output, metrics);
 
-        if (!outputFile.getParentFile().exists())
+        PhaseMetrics.register(session, metrics);
+        if (metricsFile != null)
         {
-          outputFile.getParentFile().mkdirs();
+          metrics.save(metricsFile);
         }
 
-        if (outputFile.exists())
+        if (fingerprint != null)
         {
-          outputFile.delete();
+          output.saveFingerprint(fingerprint);
         }
-
-        log.info("Writing to: " + outputFile);
-        log.info("  pom length: " + pom.length());
-
-        FileOutputStream fos = new FileOutputStream(outputFile);
-        PrintWriter pw = new PrintWriter(fos);
-        pw.write(pom);
-
-        pw.close();
-        fos.close();
       }
       catch (Exception e)
       {
@@ -246,18 +240,4 @@ private String version;
         throw new MojoExecutionException(e, "error", "error");
       }
     }
-
-private boolean contains(Artifact artifact, List<Dependency> dependencies)
-{
-  for (Dependency dep : dependencies)
-  {
-    if (artifact.getArtifactId().equals(dep.getArtifactId()) &&
-        artifact.getGroupId().equals(dep.getGroupId()))
-    {
-      return true;
-    }
-  }
-
-  return false;
-}
 }
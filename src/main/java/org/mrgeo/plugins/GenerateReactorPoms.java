@@ -0,0 +1,182 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Goal to export a psuedo-effective-pom for every module in the reactor at once.
+ *
+ * The modules are generated concurrently, each into its own build directory, and every pom is
+ * written to a temporary file and renamed into place.
+ *
+ * @goal generate-reactor-poms
+ * @aggregator
+ * @requiresDependencyResolution compile
+ * @threadSafe
+ */
+public class GenerateReactorPoms
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * All the projects in the reactor
+   * @parameter default-value="${reactorProjects}"
+   * @readonly
+   */
+  private List<MavenProject> reactorProjects;
+
+  /**
+   * Name of the pom file, written in each module's build directory
+   * @parameter alias="output"
+   *            default-value="effective-pom.xml"
+   */
+  private String output;
+
+  /**
+   * groupId for all the modules, each keeps its own when unset
+   * @parameter alias="groupId"
+   */
+  private String groupId;
+
+  /**
+   * version for all the modules, each keeps its own when unset
+   * @parameter alias="version"
+   */
+  private String version;
+
+  /**
+   * Number of modules processed at the same time
+   * @parameter alias="threads"
+   *            default-value="4"
+   */
+  private int threads;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    DependencyResolver resolver = new DependencyResolver(session, dependencyGraphBuilder)
+        .setFilter(new DependencyFilter(includeScopes, excludeScopes, includes, excludes));
+
+    // shared by all the modules, so each parent is only worked out once.  The parents are released
+    // along with the modules, so their references are rewritten too.
+    final EffectivePomGenerator generator = new EffectivePomGenerator(resolver, log).setRewriteParent(true);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try
+    {
+      List<Future<Void>> futures = new ArrayList<>(reactorProjects.size());
+      for (final MavenProject module : reactorProjects)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            PhaseMetrics metrics = new PhaseMetrics("generate-reactor-poms", module.getId());
+
+            generator.generate(module,
+                groupId == null ? module.getGroupId() : groupId,
+                module.getArtifactId(),
+                version == null ? module.getVersion() : version,
+                new OutputFile(new File(module.getBuild().getDirectory(), output)),
+                metrics);
+
+            PhaseMetrics.register(session, metrics);
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+
+      log.info("Generated " + reactorProjects.size() + " poms");
+    }
+    catch (ExecutionException e)
+    {
+      e.getCause().printStackTrace();
+      throw new MojoExecutionException(e.getCause(), "error", "error");
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException(e, "interrupted", "interrupted");
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent store of dependency graphs, so unchanged modules don't need the DependencyGraphBuilder
+ * at all in later builds.
+ *
+ * Each graph is kept in its own file, named by its key (a hash of the poms that produced it), in a
+ * compact binary form: a string table followed by the nodes in pre-order, and a CRC32 of the whole
+ * thing so corrupt or truncated entries are detected and thrown away.  The store is bounded in size,
+ * evicting the least recently used graphs first.
+ */
+public class GraphStore
+{
+  private static final int MAGIC = 0x50544731; // "PTG1"
+  private static final String SUFFIX = ".graph";
+
+  private final File directory;
+  private final long maxSize;
+  private final Log log;
+
+  public GraphStore(File directory, long maxSize, Log log)
+  {
+    this.directory = directory;
+    this.maxSize = maxSize;
+    this.log = log;
+  }
+
+  Log getLog()
+  {
+    return log;
+  }
+
+  /**
+   * @return the stored graph, or null if there isn't one (or it was unreadable)
+   */
+  public DependencyNode load(String key)
+  {
+    File file = new File(directory, key + SUFFIX);
+    if (!file.isFile())
+    {
+      return null;
+    }
+
+    try
+    {
+      DependencyNode root = read(Files.readAllBytes(file.toPath()));
+
+      // the timestamp doubles as the last access time for the eviction
+      file.setLastModified(System.currentTimeMillis());
+
+      return root;
+    }
+    catch (NoSuchFileException e)
+    {
+      // evicted by someone else in the meantime
+      return null;
+    }
+    catch (IOException e)
+    {
+      log.warn("Discarding corrupt dependency graph " + file + ": " + e.getMessage());
+      file.delete();
+
+      return null;
+    }
+  }
+
+  public void save(String key, DependencyNode root) throws IOException
+  {
+    CacheFile.save(new File(directory, key + SUFFIX), write(root));
+
+    evict();
+  }
+
+  private void evict()
+  {
+    File[] files = directory.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+
+    long total = 0;
+    List<File> graphs = new ArrayList<>();
+    final Map<File, Long> accessed = new HashMap<>();
+    for (File f : files)
+    {
+      if (f.getName().endsWith(SUFFIX))
+      {
+        graphs.add(f);
+        accessed.put(f, f.lastModified());
+        total += f.length();
+      }
+    }
+
+    if (total <= maxSize)
+    {
+      return;
+    }
+
+    // oldest first
+    File[] sorted = graphs.toArray(new File[graphs.size()]);
+    Arrays.sort(sorted, new Comparator<File>()
+    {
+      @Override
+      public int compare(File a, File b)
+      {
+        return accessed.get(a).compareTo(accessed.get(b));
+      }
+    });
+
+    for (File f : sorted)
+    {
+      if (total <= maxSize)
+      {
+        break;
+      }
+
+      long length = f.length();
+      if (f.delete())
+      {
+        log.debug("Evicted dependency graph " + f.getName());
+      }
+      total -= length;
+    }
+  }
+
+  static byte[] write(DependencyNode root) throws IOException
+  {
+    Map<String, Integer> strings = new HashMap<>();
+    List<String> table = new ArrayList<>();
+    List<DependencyNode> nodes = new ArrayList<>();
+    collect(root, nodes, strings, table);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    out.writeInt(MAGIC);
+
+    out.writeInt(table.size());
+    for (String s : table)
+    {
+      out.writeUTF(s);
+    }
+
+    out.writeInt(nodes.size());
+    for (DependencyNode node : nodes)
+    {
+      Artifact artifact = node.getArtifact();
+
+      out.writeInt(index(artifact.getGroupId(), strings));
+      out.writeInt(index(artifact.getArtifactId(), strings));
+      out.writeInt(index(artifact.getVersion(), strings));
+      out.writeInt(index(artifact.getClassifier(), strings));
+      out.writeInt(index(artifact.getType(), strings));
+      out.writeInt(index(artifact.getScope(), strings));
+      out.writeBoolean(artifact.isOptional());
+      out.writeInt(index(artifact.getFile() == null ? null : artifact.getFile().getPath(), strings));
+      out.writeInt(index(node.getPremanagedVersion(), strings));
+      out.writeInt(index(node.getPremanagedScope(), strings));
+      out.writeInt(index(node.getVersionConstraint(), strings));
+      out.writeInt(node.getChildren().size());
+    }
+
+    out.flush();
+
+    return CacheFile.seal(bytes);
+  }
+
+  static DependencyNode read(byte[] bytes) throws IOException
+  {
+    DataInputStream in = CacheFile.open(bytes, 4);
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("not a dependency graph");
+    }
+
+    String[] table = new String[in.readInt()];
+    for (int i = 0; i < table.length; i++)
+    {
+      table[i] = in.readUTF();
+    }
+
+    int count = in.readInt();
+    if (count < 1)
+    {
+      throw new IOException("empty graph");
+    }
+
+    return readNode(in, table, null);
+  }
+
+  private static DependencyNode readNode(DataInputStream in, String[] table, DependencyNode parent)
+      throws IOException
+  {
+    String groupId = string(in.readInt(), table);
+    String artifactId = string(in.readInt(), table);
+    String version = string(in.readInt(), table);
+    String classifier = string(in.readInt(), table);
+    String type = string(in.readInt(), table);
+    String scope = string(in.readInt(), table);
+    boolean optional = in.readBoolean();
+    String file = string(in.readInt(), table);
+    String premanagedVersion = string(in.readInt(), table);
+    String premanagedScope = string(in.readInt(), table);
+    String versionConstraint = string(in.readInt(), table);
+    int children = in.readInt();
+
+    Artifact artifact = new DefaultArtifact(groupId, artifactId, VersionRange.createFromVersion(version), scope,
+        type, classifier, new DefaultArtifactHandler(type), optional);
+    if (file != null)
+    {
+      artifact.setFile(new File(file));
+    }
+
+    DefaultDependencyNode node =
+        new DefaultDependencyNode(parent, artifact, premanagedVersion, premanagedScope, versionConstraint);
+
+    List<DependencyNode> nodes = new ArrayList<>(children);
+    for (int i = 0; i < children; i++)
+    {
+      nodes.add(readNode(in, table, node));
+    }
+    node.setChildren(nodes);
+
+    return node;
+  }
+
+  private static void collect(DependencyNode node, List<DependencyNode> nodes, Map<String, Integer> strings,
+      List<String> table)
+  {
+    nodes.add(node);
+
+    Artifact artifact = node.getArtifact();
+    intern(artifact.getGroupId(), strings, table);
+    intern(artifact.getArtifactId(), strings, table);
+    intern(artifact.getVersion(), strings, table);
+    intern(artifact.getClassifier(), strings, table);
+    intern(artifact.getType(), strings, table);
+    intern(artifact.getScope(), strings, table);
+    intern(artifact.getFile() == null ? null : artifact.getFile().getPath(), strings, table);
+    intern(node.getPremanagedVersion(), strings, table);
+    intern(node.getPremanagedScope(), strings, table);
+    intern(node.getVersionConstraint(), strings, table);
+
+    for (DependencyNode child : node.getChildren())
+    {
+      collect(child, nodes, strings, table);
+    }
+  }
+
+  private static void intern(String s, Map<String, Integer> strings, List<String> table)
+  {
+    if (s != null && !strings.containsKey(s))
+    {
+      strings.put(s, table.size());
+      table.add(s);
+    }
+  }
+
+  private static int index(String s, Map<String, Integer> strings)
+  {
+    return s == null ? -1 : strings.get(s);
+  }
+
+  private static String string(int index, String[] table) throws IOException
+  {
+    if (index == -1)
+    {
+      return null;
+    }
+    if (index < 0 || index >= table.length)
+    {
+      throw new IOException("bad string reference " + index);
+    }
+
+    return table[index];
+  }
+}
@@ -0,0 +1,460 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Goal to index the classes of the dependencies by package, for a launcher that wants to find a class's
+ * jar without opening every jar on the classpath.
+ *
+ * Two files are written, the classpath (one jar per line, in classpath order) and the index, which maps
+ * every package to the jars holding it, by their position in the classpath.  Only packages split across
+ * jars list their classes, and only those not in the package's first jar, which keeps the index small.
+ *
+ * The jars are read through their zip central directory only, in parallel, and the classes of each jar
+ * are cached between builds (see JarIndexCache), so only new or changed jars are read at all.
+ *
+ * @goal index-classes
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class IndexClasses
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   *  @parameter default-value="${project}"
+   *  @readonly
+   */
+  private MavenProject project;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * File to write the package index to
+   * @parameter alias="indexFile"
+   *            default-value="${project.build.directory}/class-index.properties"
+   */
+  private File indexFile;
+
+  /**
+   * File to write the classpath to
+   * @parameter alias="classpathFile"
+   *            default-value="${project.build.directory}/classpath.txt"
+   */
+  private File classpathFile;
+
+  /**
+   * Prefix of each jar in the classpath, followed by its file name, e.g. lib/ for the files staged by
+   * stage-dependencies.  The full path of the jars in the local repository when not set.
+   * @parameter alias="classpathPrefix"
+   */
+  private String classpathPrefix;
+
+  /**
+   * Number of jars read at the same time
+   * @parameter alias="threads"
+   *            default-value="4"
+   */
+  private int threads;
+
+  /**
+   * Where the index of the local repository is kept between builds.  Set it to a file outside
+   * the build directory (e.g. under ~/.m2) to share it between modules and checkouts.
+   * @parameter alias="repositoryIndexFile"
+   *            default-value="${project.build.directory}/pomtools-repository.index"
+   */
+  private File repositoryIndexFile;
+
+  /**
+   * Where the classes of each jar are kept between builds, in the build directory unless it is set to
+   * a shared file (e.g. under ~/.m2)
+   * @parameter alias="jarIndexCacheFile"
+   *            default-value="${project.build.directory}/pomtools-jar-index.cache"
+   */
+  private File jarIndexCacheFile;
+
+  /**
+   * Lockfile written by lock-dependencies, relative to the basedir.  While its input hash matches,
+   * the dependencies are taken from it instead of building the dependency graph.
+   * @parameter alias="lockFile"
+   */
+  private String lockFile;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  /**
+   * The position of each artifact on the classpath, by key.  That's a depth first, pre-order walk of
+   * the resolved graph, the order Maven puts the artifacts of every scope on the classpath in.  Artifacts
+   * taken from a lockfile have no graph, they're ordered the way Maven resolved the project's artifacts
+   * (every scope too, the goals require test resolution).
+   */
+  static Map<String, Integer> classpathOrder(MavenProject project, ResolvedDependencies resolved)
+  {
+    Map<String, Integer> order = new HashMap<>();
+
+    DependencyNode root = resolved.getRoot();
+    if (root == null)
+    {
+      for (Artifact artifact : project.getArtifacts())
+      {
+        put(order, artifact);
+      }
+
+      return order;
+    }
+
+    Deque<DependencyNode> stack = new ArrayDeque<>();
+    for (int c = root.getChildren().size() - 1; c >= 0; c--)
+    {
+      stack.push(root.getChildren().get(c));
+    }
+    while (!stack.isEmpty())
+    {
+      DependencyNode node = stack.pop();
+      put(order, node.getArtifact());
+
+      for (int c = node.getChildren().size() - 1; c >= 0; c--)
+      {
+        stack.push(node.getChildren().get(c));
+      }
+    }
+
+    return order;
+  }
+
+  private static void put(Map<String, Integer> order, Artifact artifact)
+  {
+    String key = key(artifact.getGroupId(), artifact.getArtifactId(), artifact.getType(), artifact.getClassifier());
+    if (!order.containsKey(key))
+    {
+      order.put(key, order.size());
+    }
+  }
+
+  /**
+   * The jars of the resolved artifacts, in classpath order (see classpathOrder), so a class found in
+   * more than one jar comes from the same jar it did in the build.  The project itself, artifacts
+   * missing from the local repository and files that aren't jars are left out.
+   *
+   * @return the jars, by file name
+   */
+  static Map<String, File> findJars(MavenProject project, ResolvedDependencies resolved,
+      LocalRepositoryIndex index, Log log)
+  {
+    Map<String, Integer> order = classpathOrder(project, resolved);
+
+    // an artifact out of order (only a lockfile that disagrees with the resolved artifacts has any)
+    // goes last, in the order it was listed
+    TreeMap<Integer, ArtifactRecord> ordered = new TreeMap<>();
+    for (ArtifactRecord artifact : resolved.getArtifacts())
+    {
+      // the project itself
+      if (artifact.getScope() == null)
+      {
+        continue;
+      }
+
+      Integer position = order.get(key(artifact.getGroupId(), artifact.getArtifactId(), artifact.getType(),
+          artifact.getClassifier()));
+      ordered.put(position == null ? order.size() + ordered.size() : position, artifact);
+    }
+
+    Map<String, File> jars = new LinkedHashMap<>();
+    for (ArtifactRecord artifact : ordered.values())
+    {
+      LocalRepositoryIndex.Entry entry = ListDependencies.findFile(index, artifact);
+      if (entry == null)
+      {
+        log.warn("Not in the local repository, not indexed: " + artifact);
+        continue;
+      }
+
+      File file = entry.getFile();
+      if (!file.getName().endsWith(".jar"))
+      {
+        continue;
+      }
+
+      if (jars.containsKey(file.getName()))
+      {
+        if (!jars.get(file.getName()).equals(file))
+        {
+          log.warn("Both " + jars.get(file.getName()) + " and " + file + " are named " + file.getName() +
+              ", keeping " + jars.get(file.getName()));
+        }
+        continue;
+      }
+
+      jars.put(file.getName(), file);
+    }
+
+    return jars;
+  }
+
+  private static String key(String groupId, String artifactId, String type, String classifier)
+  {
+    return groupId + ":" + artifactId + ":" + type + ":" + (classifier == null ? "" : classifier);
+  }
+
+  static String packageOf(String className)
+  {
+    int slash = className.lastIndexOf('/');
+    return slash < 0 ? "" : className.substring(0, slash);
+  }
+
+  /**
+   * The packages of the jars' classes
+   *
+   * @return the positions of the jars holding each package, in classpath order, sorted by package
+   */
+  static Map<String, List<Integer>> packages(List<File> jars, Map<File, JarDirectory> directories)
+  {
+    Map<String, List<Integer>> packages = new TreeMap<>();
+    for (int i = 0; i < jars.size(); i++)
+    {
+      JarDirectory directory = directories.get(jars.get(i));
+      for (int c = 0; c < directory.size(); c++)
+      {
+        String pkg = packageOf(directory.getName(c));
+
+        List<Integer> holders = packages.get(pkg);
+        if (holders == null)
+        {
+          holders = new ArrayList<>(1);
+          packages.put(pkg, holders);
+        }
+        if (holders.isEmpty() || holders.get(holders.size() - 1) != i)
+        {
+          holders.add(i);
+        }
+      }
+    }
+
+    return packages;
+  }
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    try
+    {
+      PhaseMetrics metrics = new PhaseMetrics("index-classes", project.getId());
+
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(new DependencyFilter(includeScopes, excludeScopes, includes, excludes))
+          .setLockFile(lockFile)
+          .resolve(project, metrics);
+
+      metrics.start(PhaseMetrics.INDEX);
+      Map<String, File> jars = findJars(project, resolved,
+          LocalRepositoryIndex.getInstance(session, repositoryIndexFile, log), log);
+
+      log.info("Indexing the classes of " + jars.size() + " jars to: " + indexFile);
+
+      metrics.start(PhaseMetrics.SCAN);
+      List<File> files = new ArrayList<>(jars.values());
+      Map<File, JarDirectory> directories =
+          JarIndexCache.getInstance(session, jarIndexCacheFile, log).directories(files, threads);
+
+      metrics.start(PhaseMetrics.MERGE);
+
+      Map<String, List<Integer>> packages = packages(files, directories);
+
+      // the classes of split packages, with the first jar holding each one
+      int split = 0;
+      for (List<Integer> holders : packages.values())
+      {
+        if (holders.size() > 1)
+        {
+          split++;
+        }
+      }
+
+      Map<String, Integer> classes = new TreeMap<>();
+      for (int i = 0; i < files.size(); i++)
+      {
+        JarDirectory directory = directories.get(files.get(i));
+        for (int c = 0; c < directory.size(); c++)
+        {
+          String name = directory.getName(c);
+          if (packages.get(packageOf(name)).size() > 1 && !classes.containsKey(name))
+          {
+            classes.put(name, i);
+          }
+        }
+      }
+
+      metrics.start(PhaseMetrics.SERIALIZE);
+
+      OutputFile classpathOutput = new OutputFile(classpathFile);
+      OutputFile indexOutput = new OutputFile(indexFile);
+      try
+      {
+        RecordWriter writer = new RecordWriter(classpathOutput.openChannel(), "|", StandardCharsets.UTF_8);
+        try
+        {
+          for (Map.Entry<String, File> jar : jars.entrySet())
+          {
+            writer.line(classpathPrefix == null ? jar.getValue().getAbsolutePath() : classpathPrefix + jar.getKey());
+          }
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        writer = new RecordWriter(indexOutput.openChannel(), "|", StandardCharsets.UTF_8);
+        try
+        {
+          writeIndex(writer, jars, files, directories, packages, classes);
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        metrics.start(PhaseMetrics.WRITE);
+        classpathOutput.commit();
+        indexOutput.commit();
+        metrics.stop();
+      }
+      finally
+      {
+        classpathOutput.discard();
+        indexOutput.discard();
+      }
+
+      log.info("  " + packages.size() + " packages, " + split + " split across jars");
+
+      PhaseMetrics.register(session, metrics);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "error", "error");
+    }
+  }
+
+  private static void writeIndex(RecordWriter writer, Map<String, File> jars, List<File> files,
+      Map<File, JarDirectory> directories, Map<String, List<Integer>> packages, Map<String, Integer> classes)
+      throws IOException
+  {
+    writer.line("# Jars: ");
+    writer.line("#  Jar | Name | Classes");
+
+    int i = 0;
+    for (String name : jars.keySet())
+    {
+      writer.field().append(i);
+      writer.field(name)
+          .field().append(directories.get(files.get(i)).size());
+      writer.endRecord();
+      i++;
+    }
+
+    writer.line("\n\n# Packages: ");
+    writer.line("#  Package | Jars");
+
+    for (Map.Entry<String, List<Integer>> pkg : packages.entrySet())
+    {
+      writer.field(pkg.getKey());
+
+      StringBuilder holders = writer.field();
+      for (int h = 0; h < pkg.getValue().size(); h++)
+      {
+        if (h > 0)
+        {
+          holders.append(',');
+        }
+        holders.append(pkg.getValue().get(h));
+      }
+
+      writer.endRecord();
+    }
+
+    // a class missing here is in its package's first jar
+    writer.line("\n\n# Split Package Classes: ");
+    writer.line("#  Class | Jar");
+
+    for (Map.Entry<String, Integer> cls : classes.entrySet())
+    {
+      if (!cls.getValue().equals(packages.get(packageOf(cls.getKey())).get(0)))
+      {
+        writer.field(cls.getKey())
+            .field().append(cls.getValue());
+        writer.endRecord();
+      }
+    }
+  }
+}
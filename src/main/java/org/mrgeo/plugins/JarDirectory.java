@@ -0,0 +1,272 @@
+package org.mrgeo.plugins;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The classes in a jar, with their CRC and size, read from the zip central directory only.
+ *
+ * Just the end of the file (the end of central directory record) and the central directory itself are
+ * read, none of the entries, so even a large jar takes a couple of small reads.  Classes under META-INF
+ * (e.g. the versioned classes of a multi-release jar) aren't included, nor are module and package
+ * descriptors (module-info.class, package-info.class), which aren't classes and which every module has
+ * its own of.
+ */
+public class JarDirectory
+{
+  private static final int EOCD = 0x06054b50;
+  private static final int ZIP64_LOCATOR = 0x07064b50;
+  private static final int ZIP64_EOCD = 0x06064b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+
+  private static final int EOCD_SIZE = 22;
+  private static final int MAX_COMMENT = 0xffff;
+
+  private static final byte[] META_INF = "META-INF/".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] CLASS = ".class".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] MODULE_INFO = "module-info.class".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] PACKAGE_INFO = "package-info.class".getBytes(StandardCharsets.US_ASCII);
+
+  // class names, with '/' separators and without the .class suffix
+  private final String[] names;
+  private final int[] crcs;
+  private final long[] sizes;
+
+  JarDirectory(String[] names, int[] crcs, long[] sizes)
+  {
+    this.names = names;
+    this.crcs = crcs;
+    this.sizes = sizes;
+  }
+
+  public int size()
+  {
+    return names.length;
+  }
+
+  /**
+   * The class name, e.g. org/mrgeo/plugins/JarDirectory
+   */
+  public String getName(int i)
+  {
+    return names[i];
+  }
+
+  public int getCrc(int i)
+  {
+    return crcs[i];
+  }
+
+  public long getSize(int i)
+  {
+    return sizes[i];
+  }
+
+  public static JarDirectory read(File jar) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(jar.toPath(), StandardOpenOption.READ))
+    {
+      long length = channel.size();
+
+      // the end record is at the very end, followed by a comment of up to 64K
+      int tail = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT);
+      ByteBuffer end = read(channel, length - tail, tail);
+
+      int eocd = -1;
+      for (int i = tail - EOCD_SIZE; i >= 0; i--)
+      {
+        if (end.getInt(i) == EOCD)
+        {
+          eocd = i;
+          break;
+        }
+      }
+      if (eocd < 0)
+      {
+        throw new IOException("Not a zip file: " + jar);
+      }
+
+      long eocdPosition = length - tail + eocd;
+      long entries = end.getShort(eocd + 10) & 0xffff;
+      long directorySize = end.getInt(eocd + 12) & 0xffffffffL;
+
+      if (entries == 0xffff || directorySize == 0xffffffffL)
+      {
+        // zip64, the real values are in the zip64 end record the locator (just before the end record) points to
+        ByteBuffer locator = read(channel, eocdPosition - 20, 20);
+        if (locator.getInt(0) != ZIP64_LOCATOR)
+        {
+          throw new IOException("Missing zip64 end of central directory locator: " + jar);
+        }
+
+        long zip64Position = locator.getLong(8);
+        ByteBuffer zip64 = read(channel, zip64Position, 56);
+        if (zip64.getInt(0) != ZIP64_EOCD)
+        {
+          throw new IOException("Missing zip64 end of central directory: " + jar);
+        }
+
+        entries = zip64.getLong(32);
+        directorySize = zip64.getLong(40);
+        eocdPosition = zip64Position;
+      }
+
+      if (directorySize > Integer.MAX_VALUE)
+      {
+        throw new IOException("Central directory too large: " + jar);
+      }
+
+      // the directory is right before the end record, even when something was prepended to the zip
+      ByteBuffer directory = read(channel, eocdPosition - directorySize, (int) directorySize);
+
+      return parse(directory, entries, jar);
+    }
+  }
+
+  private static JarDirectory parse(ByteBuffer directory, long entries, File jar) throws IOException
+  {
+    // the entry count is only a hint, it can't be trusted to size anything exactly
+    int capacity = (int) Math.max(16, Math.min(entries, 1 << 16));
+
+    List<String> names = new ArrayList<>(capacity);
+    int[] crcs = new int[capacity];
+    long[] sizes = new long[capacity];
+    int count = 0;
+
+    byte[] nameBytes = new byte[256];
+
+    int position = 0;
+    int limit = directory.limit();
+    while (position + 46 <= limit)
+    {
+      if (directory.getInt(position) != CENTRAL_HEADER)
+      {
+        throw new IOException("Corrupt central directory: " + jar);
+      }
+
+      int crc = directory.getInt(position + 16);
+      long size = directory.getInt(position + 24) & 0xffffffffL;
+      int nameLength = directory.getShort(position + 28) & 0xffff;
+      int extraLength = directory.getShort(position + 30) & 0xffff;
+      int commentLength = directory.getShort(position + 32) & 0xffff;
+
+      int name = position + 46;
+      if (name + nameLength + extraLength > limit)
+      {
+        throw new IOException("Corrupt central directory: " + jar);
+      }
+
+      if (isClass(directory, name, nameLength))
+      {
+        if (size == 0xffffffffL)
+        {
+          size = zip64Size(directory, name + nameLength, extraLength, size);
+        }
+
+        if (nameBytes.length < nameLength)
+        {
+          nameBytes = new byte[nameLength * 2];
+        }
+        for (int i = 0; i < nameLength; i++)
+        {
+          nameBytes[i] = directory.get(name + i);
+        }
+
+        if (count == crcs.length)
+        {
+          crcs = Arrays.copyOf(crcs, count * 2);
+          sizes = Arrays.copyOf(sizes, count * 2);
+        }
+
+        names.add(new String(nameBytes, 0, nameLength - ".class".length(), StandardCharsets.UTF_8));
+        crcs[count] = crc;
+        sizes[count] = size;
+        count++;
+      }
+
+      position = name + nameLength + extraLength + commentLength;
+    }
+
+    return new JarDirectory(names.toArray(new String[count]), Arrays.copyOf(crcs, count),
+        Arrays.copyOf(sizes, count));
+  }
+
+  private static boolean isClass(ByteBuffer directory, int name, int length)
+  {
+    if (length <= CLASS.length || !matches(directory, name + length - CLASS.length, CLASS) ||
+        (length >= META_INF.length && matches(directory, name, META_INF)))
+    {
+      return false;
+    }
+
+    return !isFile(directory, name, length, MODULE_INFO) && !isFile(directory, name, length, PACKAGE_INFO);
+  }
+
+  // the last path segment of the name is the file name
+  private static boolean isFile(ByteBuffer directory, int name, int length, byte[] file)
+  {
+    int start = name + length - file.length;
+    return length >= file.length && matches(directory, start, file) &&
+        (start == name || directory.get(start - 1) == '/');
+  }
+
+  private static boolean matches(ByteBuffer directory, int position, byte[] bytes)
+  {
+    for (int i = 0; i < bytes.length; i++)
+    {
+      if (directory.get(position + i) != bytes[i])
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // the uncompressed size is the first value of the zip64 extra field when it doesn't fit the header
+  private static long zip64Size(ByteBuffer directory, int extra, int length, long size)
+  {
+    int position = extra;
+    while (position + 4 <= extra + length)
+    {
+      int id = directory.getShort(position) & 0xffff;
+      int dataLength = directory.getShort(position + 2) & 0xffff;
+      if (id == 0x0001 && dataLength >= 8 && position + 12 <= extra + length)
+      {
+        return directory.getLong(position + 4);
+      }
+      position += 4 + dataLength;
+    }
+
+    return size;
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+  {
+    if (position < 0)
+    {
+      throw new IOException("Truncated zip file");
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer, position + buffer.position()) < 0)
+      {
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+
+    return buffer;
+  }
+}
@@ -0,0 +1,282 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * The classes of each jar (see JarDirectory), kept on disk between builds.
+ *
+ * A jar's classes are reused for as long as it has the same path, size and timestamp, so an unchanged
+ * jar is only ever scanned once.  The others are scanned in parallel.
+ *
+ * The on-disk format is a magic number, the jars (path, size, timestamp and their classes' name, CRC and
+ * size) and a CRC32 of everything before it.
+ */
+public class JarIndexCache
+{
+  private static final int MAGIC = 0x504a4931; // "PJI1"
+
+  // one per build and cache file, the execution request is shared by the whole build
+  private static final Map<MavenExecutionRequest, Map<File, JarIndexCache>> sessions = new WeakHashMap<>();
+
+  private final File cacheFile;
+  private final Log log;
+  private final ConcurrentMap<String, Entry> entries;
+
+  private JarIndexCache(File cacheFile, Map<String, Entry> entries, Log log)
+  {
+    this.cacheFile = cacheFile;
+    this.entries = new ConcurrentHashMap<>(entries);
+    this.log = log;
+  }
+
+  /**
+   * The cache of the build, loaded from the cache file the first time it is asked for
+   */
+  public static JarIndexCache getInstance(MavenSession session, File cacheFile, Log log)
+  {
+    synchronized (sessions)
+    {
+      Map<File, JarIndexCache> caches = sessions.get(session.getRequest());
+      if (caches == null)
+      {
+        caches = new HashMap<>();
+        sessions.put(session.getRequest(), caches);
+      }
+
+      JarIndexCache cache = caches.get(cacheFile);
+      if (cache == null)
+      {
+        Map<String, Entry> entries = new HashMap<>();
+        if (cacheFile.isFile())
+        {
+          try
+          {
+            entries = read(cacheFile);
+          }
+          catch (IOException e)
+          {
+            log.warn("Discarding corrupt jar index cache " + cacheFile + ": " + e.getMessage());
+          }
+        }
+
+        cache = new JarIndexCache(cacheFile, entries, log);
+        caches.put(cacheFile, cache);
+      }
+
+      return cache;
+    }
+  }
+
+  /**
+   * The classes of the jars, scanning (in parallel) only those that aren't cached or have changed.
+   * Newly scanned jars are saved to the cache file.
+   *
+   * @param threads number of jars scanned at the same time
+   */
+  public Map<File, JarDirectory> directories(Collection<File> jars, int threads) throws IOException
+  {
+    Map<File, JarDirectory> directories = new HashMap<>();
+    List<File> missing = new ArrayList<>();
+
+    for (File jar : new LinkedHashSet<>(jars))
+    {
+      Entry entry = entries.get(jar.getAbsolutePath());
+      if (entry != null && entry.size == jar.length() && entry.modified == jar.lastModified())
+      {
+        directories.put(jar, entry.directory);
+      }
+      else
+      {
+        missing.add(jar);
+      }
+    }
+
+    if (missing.isEmpty())
+    {
+      return directories;
+    }
+
+    long start = System.currentTimeMillis();
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(missing.size(), threads)));
+    try
+    {
+      List<Future<Entry>> futures = new ArrayList<>(missing.size());
+      for (final File jar : missing)
+      {
+        futures.add(executor.submit(new Callable<Entry>()
+        {
+          @Override
+          public Entry call() throws IOException
+          {
+            // taken before scanning, a jar changing in the meantime gets scanned again next time
+            long size = jar.length();
+            long modified = jar.lastModified();
+
+            try
+            {
+              return new Entry(size, modified, JarDirectory.read(jar));
+            }
+            catch (IOException e)
+            {
+              throw new IOException("Couldn't read " + jar + ": " + e.getMessage(), e);
+            }
+          }
+        }));
+      }
+
+      for (int i = 0; i < missing.size(); i++)
+      {
+        File jar = missing.get(i);
+        Entry entry = futures.get(i).get();
+
+        entries.put(jar.getAbsolutePath(), entry);
+        directories.put(jar, entry.directory);
+      }
+    }
+    catch (ExecutionException e)
+    {
+      throw new IOException("Couldn't scan jars", e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted scanning jars", e);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    log.info("  scanned " + missing.size() + " jars in " + (System.currentTimeMillis() - start) + "ms");
+
+    save();
+
+    return directories;
+  }
+
+  private synchronized void save() throws IOException
+  {
+    // a copy, other threads can be adding to the cache
+    final Map<String, Entry> snapshot = new HashMap<>(entries);
+
+    // streamed, with thousands of classes per jar the cache is too big to build in memory first
+    CacheFile.save(cacheFile, new CacheFile.Contents()
+    {
+      @Override
+      public void write(DataOutputStream out) throws IOException
+      {
+        JarIndexCache.write(out, snapshot);
+      }
+    });
+  }
+
+  private static class Entry
+  {
+    final long size;
+    final long modified;
+    final JarDirectory directory;
+
+    Entry(long size, long modified, JarDirectory directory)
+    {
+      this.size = size;
+      this.modified = modified;
+      this.directory = directory;
+    }
+  }
+
+  private static void write(DataOutputStream out, Map<String, Entry> entries) throws IOException
+  {
+    out.writeInt(MAGIC);
+    out.writeInt(entries.size());
+    for (Map.Entry<String, Entry> entry : entries.entrySet())
+    {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue().size);
+      out.writeLong(entry.getValue().modified);
+
+      JarDirectory directory = entry.getValue().directory;
+      out.writeInt(directory.size());
+      for (int i = 0; i < directory.size(); i++)
+      {
+        out.writeUTF(directory.getName(i));
+        out.writeInt(directory.getCrc(i));
+        out.writeLong(directory.getSize(i));
+      }
+    }
+  }
+
+  private static Map<String, Entry> read(File file) throws IOException
+  {
+    long length = file.length();
+    if (length < 16)
+    {
+      throw new IOException("truncated");
+    }
+
+    CRC32 crc = new CRC32();
+    try (InputStream stream = new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16))
+    {
+      DataInputStream in = new DataInputStream(new CheckedInputStream(stream, crc));
+      if (in.readInt() != MAGIC)
+      {
+        throw new IOException("not a jar index cache");
+      }
+
+      int count = in.readInt();
+      Map<String, Entry> entries = new HashMap<>(count * 2);
+      for (int i = 0; i < count; i++)
+      {
+        String path = in.readUTF();
+        long size = in.readLong();
+        long modified = in.readLong();
+
+        int classes = in.readInt();
+        String[] names = new String[classes];
+        int[] crcs = new int[classes];
+        long[] sizes = new long[classes];
+        for (int c = 0; c < classes; c++)
+        {
+          names[c] = in.readUTF();
+          crcs[c] = in.readInt();
+          sizes[c] = in.readLong();
+        }
+
+        entries.put(path, new Entry(size, modified, new JarDirectory(names, crcs, sizes)));
+      }
+
+      if (new DataInputStream(stream).readLong() != crc.getValue())
+      {
+        throw new IOException("checksum mismatch");
+      }
+
+      return entries;
+    }
+  }
+}
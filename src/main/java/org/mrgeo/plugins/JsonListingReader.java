@@ -0,0 +1,250 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.ArtifactUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a listing written by JsonListingWriter.  Only flat objects (string, number, boolean and null
+ * members) are understood, which is all the writer writes; members and records it doesn't know are
+ * skipped.
+ */
+class JsonListingReader extends ListingReader
+{
+  private final BufferedReader reader;
+
+  private final Map<String, Object> members = new HashMap<>();
+  private final StringBuilder buffer = new StringBuilder(64);
+
+  // the line being parsed
+  private String line;
+  private int position;
+
+  JsonListingReader(File file, InputStream in)
+  {
+    super(file);
+    this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public boolean next() throws IOException
+  {
+    while ((line = reader.readLine()) != null)
+    {
+      if (line.trim().isEmpty())
+      {
+        continue;
+      }
+
+      parse();
+
+      Object record = members.get("record");
+      if ("main".equals(record))
+      {
+        String version = string("version");
+        mainJar = new ArtifactRecord(string("groupId"), string("artifactId"), version, null, null, null,
+            version != null && ArtifactUtils.isSnapshot(version), null);
+        mainJarName = string("name");
+      }
+      else if ("dependency".equals(record))
+      {
+        String version = string("version");
+        Object snapshot = members.get("snapshot");
+
+        artifact = new ArtifactRecord(string("groupId"), string("artifactId"), version, string("classifier"),
+            string("type"), string("scope"),
+            snapshot instanceof Boolean ? (Boolean) snapshot : version != null && ArtifactUtils.isSnapshot(version),
+            null);
+        name = string("name");
+
+        Object value = members.get("size");
+        size = value instanceof Long ? (Long) value : -1;
+
+        path = string("path");
+        checksum = string("sha256");
+
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private String string(String name) throws IOException
+  {
+    Object value = members.get(name);
+    if (value != null && !(value instanceof String))
+    {
+      throw malformed("\"" + name + "\" isn't a string: " + line);
+    }
+    return (String) value;
+  }
+
+  private void parse() throws IOException
+  {
+    members.clear();
+    position = 0;
+
+    expect('{');
+    if (peek() == '}')
+    {
+      position++;
+      return;
+    }
+
+    while (true)
+    {
+      String name = parseString();
+      expect(':');
+      members.put(name, parseValue());
+
+      char c = peek();
+      position++;
+      if (c == '}')
+      {
+        return;
+      }
+      if (c != ',')
+      {
+        throw malformed(line);
+      }
+    }
+  }
+
+  private Object parseValue() throws IOException
+  {
+    char c = peek();
+    if (c == '"')
+    {
+      return parseString();
+    }
+    if (line.startsWith("null", position))
+    {
+      position += 4;
+      return null;
+    }
+    if (line.startsWith("true", position))
+    {
+      position += 4;
+      return Boolean.TRUE;
+    }
+    if (line.startsWith("false", position))
+    {
+      position += 5;
+      return Boolean.FALSE;
+    }
+
+    int start = position;
+    while (position < line.length() && "+-0123456789.eE".indexOf(line.charAt(position)) >= 0)
+    {
+      position++;
+    }
+    try
+    {
+      return Long.parseLong(line.substring(start, position));
+    }
+    catch (NumberFormatException e)
+    {
+      throw malformed(line);
+    }
+  }
+
+  private String parseString() throws IOException
+  {
+    expect('"');
+    buffer.setLength(0);
+
+    while (position < line.length())
+    {
+      char c = line.charAt(position++);
+      if (c == '"')
+      {
+        return buffer.toString();
+      }
+      if (c != '\\')
+      {
+        buffer.append(c);
+        continue;
+      }
+
+      if (position >= line.length())
+      {
+        break;
+      }
+      c = line.charAt(position++);
+      switch (c)
+      {
+      case 'n':
+        buffer.append('\n');
+        break;
+      case 'r':
+        buffer.append('\r');
+        break;
+      case 't':
+        buffer.append('\t');
+        break;
+      case 'b':
+        buffer.append('\b');
+        break;
+      case 'f':
+        buffer.append('\f');
+        break;
+      case 'u':
+        if (position + 4 > line.length())
+        {
+          throw malformed(line);
+        }
+        try
+        {
+          buffer.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+        }
+        catch (NumberFormatException e)
+        {
+          throw malformed(line);
+        }
+        position += 4;
+        break;
+      default:
+        // \" \\ \/
+        buffer.append(c);
+      }
+    }
+
+    throw malformed(line);
+  }
+
+  private char peek() throws IOException
+  {
+    while (position < line.length() && Character.isWhitespace(line.charAt(position)))
+    {
+      position++;
+    }
+    if (position >= line.length())
+    {
+      throw malformed(line);
+    }
+    return line.charAt(position);
+  }
+
+  private void expect(char c) throws IOException
+  {
+    if (peek() != c)
+    {
+      throw malformed(line);
+    }
+    position++;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    reader.close();
+  }
+}
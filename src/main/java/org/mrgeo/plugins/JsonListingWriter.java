@@ -0,0 +1,150 @@
+package org.mrgeo.plugins;
+
+import java.io.IOException;
+
+/**
+ * Writes a listing as JSON Lines, a flat object per line, each with a "record" member saying what it is:
+ *
+ * <pre>
+ *   {"record":"main","groupId":..,"artifactId":..,"version":..,"name":..}
+ *   {"record":"columns","fileDetails":false,"checksums":true}
+ *   {"record":"dependency","groupId":..,"artifactId":..,"version":..,"classifier":null,"type":..,
+ *    "scope":..,"snapshot":false,"name":..,"size":..,"sha256":..}
+ * </pre>
+ *
+ * A dependency has "size" and "path" with fileDetails, "size" and "sha256" with checksums, null when
+ * unknown.
+ */
+public class JsonListingWriter implements ListingWriter
+{
+  private final RecordWriter writer;
+
+  private boolean fileDetails = false;
+  private boolean checksums = false;
+
+  /**
+   * @param writer the lines are written as single field records, in UTF-8
+   */
+  public JsonListingWriter(RecordWriter writer)
+  {
+    this.writer = writer;
+  }
+
+  @Override
+  public void writeMainJar(String groupId, String artifactId, String version, CharSequence name) throws IOException
+  {
+    StringBuilder json = writer.field();
+    json.append("{\"record\":\"main\"");
+    member(json, "groupId", groupId);
+    member(json, "artifactId", artifactId);
+    member(json, "version", version);
+    member(json, "name", name);
+    json.append('}');
+
+    writer.endRecord();
+  }
+
+  @Override
+  public void writeColumns(boolean fileDetails, boolean checksums) throws IOException
+  {
+    this.fileDetails = fileDetails;
+    this.checksums = checksums;
+
+    writer.field().append("{\"record\":\"columns\",\"fileDetails\":").append(fileDetails)
+        .append(",\"checksums\":").append(checksums).append('}');
+    writer.endRecord();
+  }
+
+  @Override
+  public void writeDependency(ArtifactRecord artifact, CharSequence name, long size, String path, String checksum)
+      throws IOException
+  {
+    StringBuilder json = writer.field();
+    json.append("{\"record\":\"dependency\"");
+    member(json, "groupId", artifact.getGroupId());
+    member(json, "artifactId", artifact.getArtifactId());
+    member(json, "version", artifact.getVersion());
+    member(json, "classifier", artifact.getClassifier());
+    member(json, "type", artifact.getType());
+    member(json, "scope", artifact.getScope());
+    json.append(",\"snapshot\":").append(artifact.isSnapshot());
+    member(json, "name", name);
+
+    if (fileDetails || checksums)
+    {
+      json.append(",\"size\":");
+      if (size >= 0)
+      {
+        json.append(size);
+      }
+      else
+      {
+        json.append("null");
+      }
+    }
+
+    if (fileDetails)
+    {
+      member(json, "path", path);
+    }
+
+    if (checksums)
+    {
+      member(json, "sha256", checksum);
+    }
+
+    json.append('}');
+
+    writer.endRecord();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    writer.close();
+  }
+
+  private static void member(StringBuilder json, String name, CharSequence value)
+  {
+    json.append(",\"").append(name).append("\":");
+    if (value == null)
+    {
+      json.append("null");
+      return;
+    }
+
+    json.append('"');
+    for (int i = 0; i < value.length(); i++)
+    {
+      char c = value.charAt(i);
+      switch (c)
+      {
+      case '"':
+        json.append("\\\"");
+        break;
+      case '\\':
+        json.append("\\\\");
+        break;
+      case '\n':
+        json.append("\\n");
+        break;
+      case '\r':
+        json.append("\\r");
+        break;
+      case '\t':
+        json.append("\\t");
+        break;
+      default:
+        if (c < 0x20)
+        {
+          json.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+        }
+        else
+        {
+          json.append(c);
+        }
+      }
+    }
+    json.append('"');
+  }
+}
@@ -18,6 +18,7 @@ package org.mrgeo.plugins;
 
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.plugin.AbstractMojo;
@@ -31,14 +32,17 @@ import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Goal to list dependencies in a organized manner.
  *
  * @goal list-dependencies
- * @requiresDependencyResolution compile
+ * @requiresDependencyResolution test
  * @phase generate-sources
+ * @threadSafe
  */
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class ListDependencies
@@ -90,6 +94,19 @@ public class ListDependencies
    */
   private MavenProject project;
 
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * Version of this plugin, part of the incremental fingerprint so an upgraded plugin rewrites its output
+   * @parameter default-value="${plugin.version}"
+   * @readonly
+   */
+  private String pluginVersion;
 
   /**
    * Location of the file
@@ -105,6 +122,129 @@ public class ListDependencies
    */
   private String separator;
 
+  /**
+   * Skip the goal entirely when the poms, resolved artifacts and parameters are unchanged since the
+   * last run.  The goal requires test resolution so the artifacts of every scope are compared, not
+   * just the compile classpath.
+   * @parameter alias="incremental"
+   *            default-value="false"
+   */
+  private boolean incremental;
+
+  /**
+   * Directory of the persistent dependency graph cache, shared between builds.  Unset disables it.
+   * @parameter alias="graphCacheDirectory"
+   */
+  private File graphCacheDirectory;
+
+  /**
+   * Maximum size of the dependency graph cache, in megabytes
+   * @parameter alias="graphCacheSize"
+   *            default-value="256"
+   */
+  private long graphCacheSize;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  /**
+   * Walk the dependency graph in parallel, for very large (verbose) graphs
+   * @parameter alias="parallelTraversal"
+   *            default-value="false"
+   */
+  private boolean parallelTraversal;
+
+  /**
+   * Walk each distinct subtree of the dependency graph only once, treating it as a DAG.  Not used
+   * together with parallelTraversal.
+   * @parameter alias="memoizeTraversal"
+   *            default-value="false"
+   */
+  private boolean memoizeTraversal;
+
+  /**
+   * File to write the time and allocations of each phase of the execution to, none when unset
+   * @parameter alias="metricsFile"
+   */
+  private File metricsFile;
+
+  /**
+   * Lockfile written by lock-dependencies, relative to the basedir.  While its input hash matches,
+   * the dependencies are taken from it instead of building the dependency graph.
+   * @parameter alias="lockFile"
+   */
+  private String lockFile;
+
+  /**
+   * Add the size and path of each dependency's file, and use its real name, from an index of the local
+   * repository
+   * @parameter alias="fileDetails"
+   *            default-value="false"
+   */
+  private boolean fileDetails;
+
+  /**
+   * Where the index of the local repository is kept between builds, for fileDetails.  Set it
+   * to a file outside the build directory (e.g. under ~/.m2) to share it between modules and checkouts.
+   * @parameter alias="repositoryIndexFile"
+   *            default-value="${project.build.directory}/pomtools-repository.index"
+   */
+  private File repositoryIndexFile;
+
+  /**
+   * Add the SHA-256 (and size) of each dependency's file.  The checksums are kept in checksumCacheFile,
+   * only new or changed files are hashed.
+   * @parameter alias="checksums"
+   *            default-value="false"
+   */
+  private boolean checksums;
+
+  /**
+   * Where the checksums are kept between builds, in the build directory unless it is set to a shared
+   * file (e.g. under ~/.m2)
+   * @parameter alias="checksumCacheFile"
+   *            default-value="${project.build.directory}/pomtools-checksums.cache"
+   */
+  private File checksumCacheFile;
+
+  /**
+   * Format of the listing: text (separated columns), binary (length-prefixed records with a string
+   * table) or json (JSON Lines).  Any of them can be read back with ListingReader.
+   * @parameter alias="format"
+   *            default-value="text"
+   */
+  private String format;
+
+  /**
+   * Gzip the listing
+   * @parameter alias="compress"
+   *            default-value="false"
+   */
+  private boolean compress;
+
   public ListDependencies()
   {
   }
@@ -161,15 +301,18 @@ public class ListDependencies
     }
   }
 
-  private String makeFile(Artifact artifact)
+  /**
+   * Appends the file name of the artifact to the buffer
+   */
+  static void makeFile(StringBuilder name, ArtifactRecord artifact)
   {
     if (artifact.getFile() != null)
     {
-      return artifact.getFile().getName();
+      name.append(artifact.getFile().getName());
     }
     else
     {
-      StringBuilder name = new StringBuilder();
+      int start = name.length();
 
       name.append(artifact.getArtifactId()).append("-").append(artifact.getVersion());
 
@@ -178,94 +321,160 @@ public class ListDependencies
         name.append("-").append(artifact.getClassifier());
       }
 
-      if (artifact.isSnapshot() && !name.toString().endsWith("SNAPSHOT"))
+      if (artifact.isSnapshot() && !endsWith(name, start, "SNAPSHOT"))
       {
         name.append("-SNAPSHOT");
       }
 
       name.append(".").append(artifact.getType());
+    }
+  }
 
-      return name.toString();
+  private static boolean endsWith(StringBuilder buffer, int start, String suffix)
+  {
+    int offset = buffer.length() - suffix.length();
+    if (offset < start)
+    {
+      return false;
     }
+
+    for (int i = 0; i < suffix.length(); i++)
+    {
+      if (buffer.charAt(offset + i) != suffix.charAt(i))
+      {
+        return false;
+      }
+    }
+
+    return true;
   }
 
-  public void execute()
-      throws MojoExecutionException
+  /**
+   * The file of the artifact, from the index, or null if it isn't in the local repository
+   */
+  static LocalRepositoryIndex.Entry findFile(LocalRepositoryIndex index, ArtifactRecord artifact)
   {
-    Log log = getLog();
+    return artifact.getFile() != null ? index.find(artifact.getFile()) : index.find(artifact);
+  }
 
-    try
+  /**
+   * Writes the main jar section and the header of the dependencies section
+   *
+   * @param fileDetails add the Size and Path columns
+   * @param checksums   add the SHA-256 column (and Size, without fileDetails)
+   */
+  static void writeHeader(ListingWriter writer, Model model, boolean fileDetails, boolean checksums)
+      throws IOException
+  {
+    writer.writeMainJar(model.getGroupId(), model.getArtifactId(), model.getVersion(),
+        new StringBuilder().append(model.getArtifactId()).append('-').append(model.getVersion())
+            .append('.').append(model.getPackaging()));
+    writer.writeColumns(fileDetails, checksums);
+  }
+
+  /**
+   * Writes a record for each artifact, logging it when debug is enabled
+   *
+   * @param index       when not null, the files of the artifacts are looked up in it, for their real name
+   *                    and the file columns (empty for files that aren't there)
+   * @param fileDetails write the Size and Path columns
+   * @param checksums   when not null, the checksums of the files, for the SHA-256 column (and Size, without
+   *                    fileDetails)
+   */
+  static void writeArtifacts(ListingWriter writer, List<ArtifactRecord> artifacts, LocalRepositoryIndex index,
+      boolean fileDetails, Map<File, String> checksums, Log log) throws IOException
+  {
+    boolean debug = log.isDebugEnabled();
+    StringBuilder name = new StringBuilder(64);
+    for (ArtifactRecord artifact : artifacts)
     {
-      Model model = project.getModel();
+      name.setLength(0);
 
-      if (!outputFile.getParentFile().exists())
+      LocalRepositoryIndex.Entry entry = index != null ? findFile(index, artifact) : null;
+      if (entry != null)
       {
-        outputFile.getParentFile().mkdirs();
+        name.append(entry.getFile().getName());
       }
-
-      if (outputFile.exists())
+      else
       {
-        outputFile.delete();
+        makeFile(name, artifact);
       }
 
-      log.info("Writing to: " + outputFile);
+      long size = entry != null ? entry.getSize() : -1;
+      String path = fileDetails && entry != null ? entry.getFile().getPath() : null;
+      String checksum = checksums != null && entry != null ? checksums.get(entry.getFile()) : null;
 
-      FileOutputStream fos = new FileOutputStream(outputFile);
-      PrintWriter pw = new PrintWriter(fos);
-
-      pw.println("# Main Jar: ");
-      pw.println("#  GroupId | ArtifactId | Version | Name");
+      if (debug)
+      {
+        log.debug(artifact + " " + name);
+      }
 
-      pw.print(model.getGroupId() + separator +
-          model.getArtifactId() + separator +
-          model.getVersion() + separator);
-      pw.println(model.getArtifactId() + "-" + model.getVersion() + "." + model.getPackaging());
+      writer.writeDependency(artifact, name, size, path, checksum);
+    }
+  }
 
-      pw.println("\n\n# Dependencies: ");
-      pw.println("#  GroupId | ArtifactId | Version | Classifier | Type | Scope | Name");
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
 
+    ListingFormat listingFormat;
+    try
+    {
+      listingFormat = ListingFormat.of(format);
+    }
+    catch (IllegalArgumentException e)
+    {
+      throw new MojoExecutionException(e.getMessage(), e);
+    }
 
-      try
-      {
-        org.apache.maven.shared.dependency.graph.DependencyNode root =
-            dependencyGraphBuilder.buildDependencyGraph( project, null );
+    try
+    {
+      Model model = project.getModel();
 
-//        StringWriter writer = new StringWriter();
-//
-//        SerializingDependencyNodeVisitor visitor = new SerializingDependencyNodeVisitor(writer);
-//        root.accept(visitor);
-//
-//        log.info(writer.toString());
-        DependencyVisitor visitor = new DependencyVisitor();
-        root.accept(visitor);
+      OutputFile output = new OutputFile(outputFile);
+      DependencyFilter filter = new DependencyFilter(includeScopes, excludeScopes, includes, excludes);
 
-        for (Artifact artifact : visitor.getArtifacts())
+      String fingerprint = null;
+      if (incremental)
+      {
+        fingerprint = new Fingerprint()
+            .addPomChain(project)
+            .addArtifacts(project.getArtifacts())
+            .add("list-dependencies")
+            .add(pluginVersion)
+            .add(outputFile.getAbsolutePath())
+            .add(separator)
+            .add(filter.getKey())
+            .add(Boolean.toString(fileDetails))
+            .add(Boolean.toString(checksums))
+            .add(listingFormat.name())
+            .add(Boolean.toString(compress))
+            .getValue();
+
+        if (output.isUpToDate(fingerprint))
         {
-          {
-            log.debug(artifact.getGroupId() + separator +
-                artifact.getArtifactId() + separator +
-                artifact.getVersion() + separator +
-                (artifact.getClassifier() != null ? artifact.getClassifier() : "") + separator +
-                artifact.getType() + separator +
-                artifact.getScope() + separator +
-                makeFile(artifact));
-
-            pw.println(artifact.getGroupId() + separator +
-                artifact.getArtifactId() + separator +
-                artifact.getVersion() + separator +
-                (artifact.getClassifier() != null ? artifact.getClassifier() : "") + separator +
-                artifact.getType() + separator +
-                artifact.getScope() + separator +
-                makeFile(artifact));
-          }
+          log.info("Up to date: " + outputFile);
+          return;
         }
-
       }
-      catch (DependencyGraphBuilderException e)
+
+      log.info("Writing to: " + outputFile);
+
+      PhaseMetrics metrics = new PhaseMetrics("list-dependencies", project.getId());
+
+      boolean complete;
+      boolean replaced;
+      try
       {
-        e.printStackTrace();
-      }
+        ListingWriter writer = listingFormat.open(output, separator, compress);
+        try
+        {
+          metrics.start(PhaseMetrics.SERIALIZE);
+          writeHeader(writer, model, fileDetails, checksums);
+          metrics.stop();
 
+          complete = writeDependencies(writer, filter, metrics, log);
 
 //      Map<String, Artifact> artifacts = new TreeMap<>();
 //      Map<String, String> scopes = new HashMap<>();
@@ -455,8 +664,38 @@ public class ListDependencies
 //        }
 //      }
 
-      pw.close();
-      fos.close();
+
+          metrics.start(PhaseMetrics.WRITE);
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        replaced = output.commit();
+        metrics.stop();
+      }
+      finally
+      {
+        output.discard();
+      }
+
+      if (!replaced)
+      {
+        log.info("  unchanged, left as is");
+      }
+
+      PhaseMetrics.register(session, metrics);
+      if (metricsFile != null)
+      {
+        metrics.save(metricsFile);
+      }
+
+      // only remember a complete listing, otherwise we'd skip the rerun that fixes it
+      if (fingerprint != null && complete)
+      {
+        output.saveFingerprint(fingerprint);
+      }
     }
     catch (IOException e)
     {
@@ -466,4 +705,73 @@ public class ListDependencies
     }
 
   }
+
+  /**
+   * Resolves the dependencies and writes them after the header.
+   *
+   * @return false if the graph couldn't be built, and the listing has no dependencies
+   */
+  private boolean writeDependencies(ListingWriter writer, DependencyFilter filter, PhaseMetrics metrics, Log log)
+      throws IOException
+  {
+    try
+    {
+      GraphStore store = graphCacheDirectory == null ? null :
+          new GraphStore(graphCacheDirectory, graphCacheSize * 1024 * 1024, log);
+
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(filter)
+          .setStore(store)
+          .setParallel(parallelTraversal)
+          .setMemoize(memoizeTraversal)
+          .setLockFile(lockFile)
+          .resolve(project, metrics);
+
+      if (resolved.isLocked())
+      {
+        log.info("  dependencies taken from the lockfile");
+      }
+
+      if (memoizeTraversal && !parallelTraversal)
+      {
+        log.info("  memoized traversal skipped " + resolved.getSkippedNodes() + " nodes");
+      }
+
+      LocalRepositoryIndex index = null;
+      if (fileDetails || checksums)
+      {
+        metrics.start(PhaseMetrics.INDEX);
+        index = LocalRepositoryIndex.getInstance(session, repositoryIndexFile, log);
+      }
+
+      Map<File, String> sums = null;
+      if (checksums)
+      {
+        metrics.start(PhaseMetrics.CHECKSUM);
+
+        List<File> files = new ArrayList<>();
+        for (ArtifactRecord artifact : resolved.getArtifacts())
+        {
+          LocalRepositoryIndex.Entry entry = findFile(index, artifact);
+          if (entry != null)
+          {
+            files.add(entry.getFile());
+          }
+        }
+
+        sums = ChecksumCache.getInstance(session, checksumCacheFile, log).checksums(files);
+      }
+
+      metrics.start(PhaseMetrics.SERIALIZE);
+      writeArtifacts(writer, resolved.getArtifacts(), index, fileDetails, sums, log);
+      metrics.stop();
+
+      return true;
+    }
+    catch (DependencyGraphBuilderException e)
+    {
+      e.printStackTrace();
+      return false;
+    }
+  }
 }
@@ -0,0 +1,335 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Goal to list the dependencies of every module in the reactor in one pass.
+ *
+ * Writes the same per-module file as list-dependencies, plus one combined index of every distinct
+ * artifact in the reactor and the modules that use it.
+ *
+ * @goal list-reactor-dependencies
+ * @aggregator
+ * @requiresDependencyResolution compile
+ * @threadSafe
+ */
+public class ListReactorDependencies
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * All the projects in the reactor
+   * @parameter default-value="${reactorProjects}"
+   * @readonly
+   */
+  private List<MavenProject> reactorProjects;
+
+  /**
+   * Location of the combined index
+   * @parameter alias="output"
+   *            default-value="${project.build.directory}/reactor-dependencies.properties"
+   */
+  private File outputFile;
+
+  /**
+   * Name of the per-module file, written in each module's build directory
+   * @parameter alias="moduleOutput"
+   *            default-value="dependencies.properties"
+   */
+  private String moduleOutput;
+
+  /**
+   * Location of the file
+   * @parameter alias="separator"
+   *            default-value="|"
+   */
+  private String separator;
+
+  /**
+   * Format of the per-module files, text, binary or json, see list-dependencies.  The combined index
+   * is always text.
+   * @parameter alias="format"
+   *            default-value="text"
+   */
+  private String format;
+
+  /**
+   * Gzip the per-module files
+   * @parameter alias="compress"
+   *            default-value="false"
+   */
+  private boolean compress;
+
+  /**
+   * Number of modules processed at the same time
+   * @parameter alias="threads"
+   *            default-value="4"
+   */
+  private int threads;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    final Log log = getLog();
+
+    final ListingFormat listingFormat;
+    try
+    {
+      listingFormat = ListingFormat.of(format);
+    }
+    catch (IllegalArgumentException e)
+    {
+      throw new MojoExecutionException(e.getMessage(), e);
+    }
+
+    final DependencyResolver resolver = new DependencyResolver(session, dependencyGraphBuilder)
+        .setFilter(new DependencyFilter(includeScopes, excludeScopes, includes, excludes));
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try
+    {
+      List<Future<ResolvedDependencies>> futures = new ArrayList<>(reactorProjects.size());
+      for (final MavenProject module : reactorProjects)
+      {
+        futures.add(executor.submit(new Callable<ResolvedDependencies>()
+        {
+          @Override
+          public ResolvedDependencies call() throws Exception
+          {
+            PhaseMetrics metrics = new PhaseMetrics("list-reactor-dependencies", module.getId());
+
+            ResolvedDependencies resolved = resolver.resolve(module, metrics);
+            writeModule(module, resolved, listingFormat, metrics, log);
+
+            PhaseMetrics.register(session, metrics);
+
+            return resolved;
+          }
+        }));
+      }
+
+      // every distinct artifact (regardless of scope and the file it resolved to), in coordinate
+      // order, and the modules using it
+      Map<ArtifactRecord, SortedSet<String>> index = new TreeMap<>();
+      for (int i = 0; i < reactorProjects.size(); i++)
+      {
+        MavenProject module = reactorProjects.get(i);
+        ResolvedDependencies resolved = futures.get(i).get();
+
+        String moduleId = module.getGroupId() + ":" + module.getArtifactId();
+
+        for (ArtifactRecord artifact : resolved.getArtifacts())
+        {
+          ArtifactRecord key = new ArtifactRecord(artifact.getGroupId(), artifact.getArtifactId(),
+              artifact.getVersion(), artifact.getClassifier(), artifact.getType(), null, artifact.isSnapshot(),
+              null);
+
+          // the module itself isn't one of its dependencies
+          if (artifact.getScope() == null && artifact.getGroupId().equals(module.getGroupId()) &&
+              artifact.getArtifactId().equals(module.getArtifactId()))
+          {
+            continue;
+          }
+
+          SortedSet<String> modules = index.get(key);
+          if (modules == null)
+          {
+            modules = new TreeSet<>();
+            index.put(key, modules);
+          }
+          modules.add(moduleId);
+        }
+      }
+
+      writeIndex(index, log);
+    }
+    catch (ExecutionException e)
+    {
+      e.getCause().printStackTrace();
+      throw new MojoExecutionException(e.getCause(), "error", "error");
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException(e, "interrupted", "interrupted");
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "IOException", "IOException");
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private void writeModule(MavenProject module, ResolvedDependencies resolved, ListingFormat listingFormat,
+      PhaseMetrics metrics, Log log)
+      throws IOException
+  {
+    OutputFile output = new OutputFile(new File(module.getBuild().getDirectory(), moduleOutput));
+
+    boolean replaced;
+    try
+    {
+      ListingWriter writer = listingFormat.open(output, separator, compress);
+      try
+      {
+        metrics.start(PhaseMetrics.SERIALIZE);
+        ListDependencies.writeHeader(writer, module.getModel(), false, false);
+        ListDependencies.writeArtifacts(writer, resolved.getArtifacts(), null, false, null, log);
+        metrics.start(PhaseMetrics.WRITE);
+      }
+      finally
+      {
+        writer.close();
+      }
+
+      replaced = output.commit();
+    }
+    finally
+    {
+      output.discard();
+    }
+    metrics.stop();
+
+    if (replaced)
+    {
+      log.info("Wrote: " + output.getFile());
+    }
+  }
+
+  private void writeIndex(Map<ArtifactRecord, SortedSet<String>> index, Log log) throws IOException
+  {
+    log.info("Writing to: " + outputFile);
+    log.info("  " + index.size() + " distinct artifacts in " + reactorProjects.size() + " modules");
+
+    OutputFile output = new OutputFile(outputFile);
+    try
+    {
+      writeIndex(output, index);
+      if (!output.commit())
+      {
+        log.info("  unchanged, left as is");
+      }
+    }
+    finally
+    {
+      output.discard();
+    }
+  }
+
+  private void writeIndex(OutputFile output, Map<ArtifactRecord, SortedSet<String>> index) throws IOException
+  {
+    RecordWriter writer = new RecordWriter(output.openChannel(), separator);
+    try
+    {
+      writer.line("# Reactor Dependencies: ");
+      writer.line("#  GroupId | ArtifactId | Version | Classifier | Type | Name | Modules");
+
+      for (Map.Entry<ArtifactRecord, SortedSet<String>> entry : index.entrySet())
+      {
+        ArtifactRecord artifact = entry.getKey();
+
+        writer.field(artifact.getGroupId())
+            .field(artifact.getArtifactId())
+            .field(artifact.getVersion())
+            .field(artifact.getClassifier() != null ? artifact.getClassifier() : "")
+            .field(artifact.getType());
+        ListDependencies.makeFile(writer.field(), artifact);
+
+        StringBuilder modules = writer.field();
+        boolean first = true;
+        for (String module : entry.getValue())
+        {
+          if (!first)
+          {
+            modules.append(',');
+          }
+          modules.append(module);
+          first = false;
+        }
+
+        writer.endRecord();
+      }
+    }
+    finally
+    {
+      writer.close();
+    }
+  }
+}
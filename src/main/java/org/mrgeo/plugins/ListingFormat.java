@@ -0,0 +1,71 @@
+package org.mrgeo.plugins;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The formats a dependency listing can be written in.  Whatever the format, and whether or not it's
+ * gzipped, a listing is read back with ListingReader.open(), which tells them apart from their first bytes.
+ */
+public enum ListingFormat
+{
+  /**
+   * Separated columns under commented section headers, the original format
+   */
+  TEXT,
+
+  /**
+   * Length-prefixed records, with the repeated strings (groupIds, versions, scopes...) written once and
+   * then referenced by number, see BinaryListingWriter
+   */
+  BINARY,
+
+  /**
+   * JSON Lines, an object per record, see JsonListingWriter
+   */
+  JSON;
+
+  /**
+   * @param name the name of the format, in any case
+   */
+  public static ListingFormat of(String name)
+  {
+    try
+    {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+    catch (IllegalArgumentException e)
+    {
+      throw new IllegalArgumentException("Unknown listing format \"" + name + "\", expected one of " +
+          Arrays.toString(values()).toLowerCase(Locale.ROOT));
+    }
+  }
+
+  /**
+   * Opens a writer on the output's temporary file, which is closed with the writer
+   *
+   * @param separator separator of the text columns
+   * @param compress  gzip the listing
+   */
+  public ListingWriter open(OutputFile output, String separator, boolean compress) throws IOException
+  {
+    WritableByteChannel channel = compress ?
+        Channels.newChannel(new GZIPOutputStream(output.open(), 64 * 1024)) :
+        output.openChannel();
+
+    switch (this)
+    {
+    case BINARY:
+      return new BinaryListingWriter(channel);
+    case JSON:
+      return new JsonListingWriter(new RecordWriter(channel, "", StandardCharsets.UTF_8));
+    default:
+      return new TextListingWriter(new RecordWriter(channel, separator));
+    }
+  }
+}
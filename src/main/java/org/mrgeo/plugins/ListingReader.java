@@ -0,0 +1,197 @@
+package org.mrgeo.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a listing written by list-dependencies back, a dependency at a time, in any of the ListingFormats,
+ * gzipped or not.
+ *
+ * <pre>
+ *   try (ListingReader reader = ListingReader.open(file, "|"))
+ *   {
+ *     while (reader.next())
+ *     {
+ *       reader.getArtifact() ... reader.getSize() ...
+ *     }
+ *   }
+ * </pre>
+ *
+ * The artifacts have no file.  A dependency's name, size, path and checksum are the ones the listing has,
+ * depending on whether it was written with fileDetails and checksums.
+ */
+public abstract class ListingReader implements Closeable
+{
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+
+  ArtifactRecord mainJar = null;
+  String mainJarName = null;
+
+  ArtifactRecord artifact = null;
+  String name = null;
+  long size = -1;
+  String path = null;
+  String checksum = null;
+
+  ListingReader(File file)
+  {
+    this.file = file;
+  }
+
+  /**
+   * Opens the listing, telling the format from its first bytes
+   *
+   * @param separator separator of the columns, if it's a text listing
+   */
+  public static ListingReader open(File file, String separator) throws IOException
+  {
+    InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    try
+    {
+      byte[] head = peek(in, 2);
+      if (head.length == 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b)
+      {
+        in = new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+      }
+
+      head = peek(in, 4);
+      if (head.length == 4 && ((head[0] & 0xff) << 24 | (head[1] & 0xff) << 16 | (head[2] & 0xff) << 8 |
+          (head[3] & 0xff)) == BinaryListingWriter.MAGIC)
+      {
+        return new BinaryListingReader(file, in);
+      }
+      if (head.length > 0 && head[0] == '{')
+      {
+        return new JsonListingReader(file, in);
+      }
+
+      return new TextListingReader(file, in, separator);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the dependencies, in the order they were listed
+   */
+  public static List<ArtifactRecord> read(File file, String separator) throws IOException
+  {
+    List<ArtifactRecord> artifacts = new ArrayList<>();
+
+    try (ListingReader reader = open(file, separator))
+    {
+      while (reader.next())
+      {
+        artifacts.add(reader.getArtifact());
+      }
+    }
+
+    return artifacts;
+  }
+
+  private static byte[] peek(InputStream in, int bytes) throws IOException
+  {
+    byte[] head = new byte[bytes];
+
+    in.mark(bytes);
+    int read = 0;
+    int n;
+    while (read < bytes && (n = in.read(head, read, bytes - read)) >= 0)
+    {
+      read += n;
+    }
+    in.reset();
+
+    if (read < bytes)
+    {
+      byte[] shorter = new byte[read];
+      System.arraycopy(head, 0, shorter, 0, read);
+      return shorter;
+    }
+
+    return head;
+  }
+
+  /**
+   * Moves to the next dependency
+   *
+   * @return false at the end of the listing
+   */
+  public abstract boolean next() throws IOException;
+
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * The project the listing is for (with no scope or type), or null if it has none.  The main jar comes
+   * before the dependencies, so it's known once next() has been called.
+   */
+  public ArtifactRecord getMainJar()
+  {
+    return mainJar;
+  }
+
+  public String getMainJarName()
+  {
+    return mainJarName;
+  }
+
+  /**
+   * The current dependency
+   */
+  public ArtifactRecord getArtifact()
+  {
+    return artifact;
+  }
+
+  /**
+   * The file name of the current dependency
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * The size of the current dependency's file, -1 when the listing doesn't have it
+   */
+  public long getSize()
+  {
+    return size;
+  }
+
+  /**
+   * The path of the current dependency's file, null when the listing doesn't have it
+   */
+  public String getPath()
+  {
+    return path;
+  }
+
+  /**
+   * The hex SHA-256 of the current dependency's file, null when the listing doesn't have it
+   */
+  public String getChecksum()
+  {
+    return checksum;
+  }
+
+  IOException malformed(String what)
+  {
+    return new IOException("Malformed listing " + file + ": " + what);
+  }
+}
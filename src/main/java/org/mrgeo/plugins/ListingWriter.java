@@ -0,0 +1,29 @@
+package org.mrgeo.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes a dependency listing in one of the ListingFormats.
+ *
+ * The main jar comes first, then the columns, then the dependencies one at a time.  Closing the writer
+ * closes whatever it writes to.
+ */
+public interface ListingWriter extends Closeable
+{
+  void writeMainJar(String groupId, String artifactId, String version, CharSequence name) throws IOException;
+
+  /**
+   * @param fileDetails the dependencies have a size and path
+   * @param checksums   the dependencies have a size and SHA-256 checksum
+   */
+  void writeColumns(boolean fileDetails, boolean checksums) throws IOException;
+
+  /**
+   * @param size     -1 when unknown
+   * @param path     null when unknown
+   * @param checksum hex SHA-256, null when unknown
+   */
+  void writeDependency(ArtifactRecord artifact, CharSequence name, long size, String path, String checksum)
+      throws IOException;
+}
@@ -0,0 +1,613 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline index of the files in the local repository, to find the file of an artifact (its real name,
+ * size and path) without asking Aether for it.
+ *
+ * The index is kept on disk between builds and brought up to date once per build by walking the
+ * repository, split across a thread per top level directory.  A directory of files only (an artifact
+ * version) whose timestamp hasn't changed since the last walk isn't read again, its files are taken from
+ * the stored index, so after the first build only new and updated versions are actually listed.  A file
+ * overwritten in place doesn't change the directory's timestamp, so files found in such a directory are
+ * looked at again when they are asked for.
+ *
+ * The on-disk format is a magic number, the directories (path relative to the repository, timestamp,
+ * then the name, size and timestamp of each file) and a CRC32 of everything before it.
+ */
+public class LocalRepositoryIndex
+{
+  private static final int MAGIC = 0x504c5231; // "PLR1"
+
+  // timestamped snapshot versions, e.g. 1.0-20150114.123456-1, live in the 1.0-SNAPSHOT directory
+  private static final Pattern TIMESTAMPED = Pattern.compile("^(.*)-(\\d{8}\\.\\d{6})-(\\d+)$");
+
+  // one per build and index file, the execution request is shared by the whole build.  The walk runs
+  // outside the lock, goals asking for another index (or another build's) don't wait for it.
+  private static final Map<MavenExecutionRequest, Map<File, FutureTask<LocalRepositoryIndex>>> sessions =
+      new WeakHashMap<>();
+
+  private final File repository;
+  private final Map<String, Directory> directories;
+
+  private LocalRepositoryIndex(File repository, Map<String, Directory> directories)
+  {
+    this.repository = repository;
+    this.directories = directories;
+  }
+
+  /**
+   * The index of the session's local repository, loaded from the index file and brought up to date the
+   * first time it is asked for in the build
+   */
+  public static LocalRepositoryIndex getInstance(MavenSession session, final File indexFile, final Log log)
+      throws IOException
+  {
+    final File repository = new File(session.getLocalRepository().getBasedir());
+
+    Map<File, FutureTask<LocalRepositoryIndex>> indexes;
+    FutureTask<LocalRepositoryIndex> task;
+    boolean created = false;
+    synchronized (sessions)
+    {
+      indexes = sessions.get(session.getRequest());
+      if (indexes == null)
+      {
+        indexes = new HashMap<>();
+        sessions.put(session.getRequest(), indexes);
+      }
+
+      task = indexes.get(indexFile);
+      if (task == null)
+      {
+        task = new FutureTask<>(new Callable<LocalRepositoryIndex>()
+        {
+          @Override
+          public LocalRepositoryIndex call() throws IOException
+          {
+            return update(repository, indexFile, log);
+          }
+        });
+        indexes.put(indexFile, task);
+        created = true;
+      }
+    }
+
+    if (created)
+    {
+      task.run();
+    }
+
+    try
+    {
+      return task.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted indexing " + repository, e);
+    }
+    catch (ExecutionException e)
+    {
+      // don't remember failures, the next caller gets to try again
+      synchronized (sessions)
+      {
+        if (indexes.get(indexFile) == task)
+        {
+          indexes.remove(indexFile);
+        }
+      }
+
+      if (e.getCause() instanceof IOException)
+      {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Couldn't index " + repository, e.getCause());
+    }
+  }
+
+  /**
+   * Loads the stored index, walks the repository for anything that changed, and stores the result
+   */
+  static LocalRepositoryIndex update(File repository, File indexFile, Log log) throws IOException
+  {
+    long start = System.currentTimeMillis();
+
+    Map<String, Directory> previous = Collections.emptyMap();
+    if (indexFile.isFile())
+    {
+      try
+      {
+        previous = read(Files.readAllBytes(indexFile.toPath()));
+      }
+      catch (IOException e)
+      {
+        log.warn("Discarding corrupt repository index " + indexFile + ": " + e.getMessage());
+      }
+    }
+
+    AtomicInteger reused = new AtomicInteger();
+    Map<String, Directory> directories = walk(repository.toPath(), previous, reused);
+
+    CacheFile.save(indexFile, write(directories));
+
+    log.info("Indexed " + repository + " in " + (System.currentTimeMillis() - start) + "ms: " +
+        directories.size() + " directories, " + reused.get() + " unchanged");
+
+    return new LocalRepositoryIndex(repository, directories);
+  }
+
+  /**
+   * The file of the artifact in the local repository, or null if it isn't there
+   */
+  public Entry find(ArtifactRecord artifact)
+  {
+    String version = artifact.getVersion();
+    String baseVersion = version;
+
+    Matcher matcher = TIMESTAMPED.matcher(version);
+    if (matcher.matches())
+    {
+      baseVersion = matcher.group(1) + "-SNAPSHOT";
+    }
+
+    String dir = artifact.getGroupId().replace('.', '/') + "/" + artifact.getArtifactId() + "/" + baseVersion;
+
+    Directory directory = directories.get(dir);
+    if (directory == null)
+    {
+      return null;
+    }
+
+    StringBuilder name = new StringBuilder();
+    name.append(artifact.getArtifactId()).append('-').append(version);
+
+    String classifier = artifact.getClassifier();
+    if ((classifier == null || classifier.isEmpty()) && "test-jar".equals(artifact.getType()))
+    {
+      classifier = "tests";
+    }
+    if (classifier != null && !classifier.isEmpty())
+    {
+      name.append('-').append(classifier);
+    }
+    name.append('.').append(extension(artifact.getType()));
+
+    int i = Arrays.binarySearch(directory.names, name.toString());
+    if (i < 0)
+    {
+      return null;
+    }
+
+    return entry(directory, new File(new File(repository, dir), directory.names[i]), i);
+  }
+
+  /**
+   * The file of an artifact that already has one, with its size from the index when it is in the
+   * repository (and from the file itself otherwise)
+   */
+  public Entry find(File file)
+  {
+    String path = file.getAbsolutePath();
+    String base = repository.getAbsolutePath() + File.separator;
+
+    if (path.startsWith(base))
+    {
+      String relative = path.substring(base.length()).replace(File.separatorChar, '/');
+      int slash = relative.lastIndexOf('/');
+
+      Directory directory = slash < 0 ? null : directories.get(relative.substring(0, slash));
+      if (directory != null)
+      {
+        int i = Arrays.binarySearch(directory.names, relative.substring(slash + 1));
+        if (i >= 0)
+        {
+          return entry(directory, file, i);
+        }
+      }
+    }
+
+    return stat(file);
+  }
+
+  private static Entry entry(Directory directory, File file, int i)
+  {
+    // the directory wasn't listed again, one of its files may have been overwritten since
+    if (directory.reused)
+    {
+      return stat(file);
+    }
+
+    return new Entry(file, directory.sizes[i], directory.modified[i]);
+  }
+
+  private static Entry stat(File file)
+  {
+    try
+    {
+      BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      return attrs.isRegularFile() ? new Entry(file, attrs.size(), attrs.lastModifiedTime().toMillis()) : null;
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+  }
+
+  public static class Entry
+  {
+    private final File file;
+    private final long size;
+    private final long modified;
+
+    Entry(File file, long size, long modified)
+    {
+      this.file = file;
+      this.size = size;
+      this.modified = modified;
+    }
+
+    public File getFile()
+    {
+      return file;
+    }
+
+    public long getSize()
+    {
+      return size;
+    }
+
+    public long getModified()
+    {
+      return modified;
+    }
+  }
+
+  private static String extension(String type)
+  {
+    switch (type)
+    {
+    case "test-jar":
+    case "maven-plugin":
+    case "ejb":
+    case "ejb-client":
+    case "java-source":
+    case "javadoc":
+    case "bundle":
+      return "jar";
+    default:
+      return type;
+    }
+  }
+
+  private static Map<String, Directory> walk(final Path repository, final Map<String, Directory> previous,
+      final AtomicInteger reused) throws IOException
+  {
+    final ConcurrentMap<String, Directory> directories = new ConcurrentHashMap<>();
+    if (!Files.isDirectory(repository))
+    {
+      return directories;
+    }
+
+    // every directory two levels down is walked on its own, that's where the repository fans out
+    List<Path> roots = new ArrayList<>();
+    for (Path first : list(repository))
+    {
+      if (Files.isDirectory(first) && !first.getFileName().toString().startsWith("."))
+      {
+        for (Path second : list(first))
+        {
+          if (Files.isDirectory(second))
+          {
+            roots.add(second);
+          }
+        }
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try
+    {
+      List<Future<Void>> futures = new ArrayList<>(roots.size());
+      for (final Path root : roots)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws IOException
+          {
+            Files.walkFileTree(root, new Walker(repository, previous, directories, reused));
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+    catch (ExecutionException e)
+    {
+      throw new IOException("Couldn't index " + repository, e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted indexing " + repository, e);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    return directories;
+  }
+
+  private static List<Path> list(Path dir) throws IOException
+  {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir))
+    {
+      for (Path path : stream)
+      {
+        paths.add(path);
+      }
+    }
+    catch (NoSuchFileException e)
+    {
+      // removed in the meantime
+    }
+
+    return paths;
+  }
+
+  private static class Walker extends SimpleFileVisitor<Path>
+  {
+    private final Path repository;
+    private final Map<String, Directory> previous;
+    private final Map<String, Directory> directories;
+    private final AtomicInteger reused;
+
+    private final Deque<Builder> stack = new ArrayDeque<>();
+
+    Walker(Path repository, Map<String, Directory> previous, Map<String, Directory> directories,
+        AtomicInteger reused)
+    {
+      this.repository = repository;
+      this.previous = previous;
+      this.directories = directories;
+      this.reused = reused;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+    {
+      String path = relative(dir);
+      long modified = attrs.lastModifiedTime().toMillis();
+
+      if (!stack.isEmpty())
+      {
+        stack.peek().leaf = false;
+      }
+
+      // adding or removing a file changes the directory's timestamp
+      Directory old = previous.get(path);
+      if (old != null && old.leaf && old.directoryModified == modified)
+      {
+        directories.put(path, old.reuse());
+        reused.incrementAndGet();
+
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+
+      stack.push(new Builder(path, modified));
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+    {
+      String name = file.getFileName().toString();
+      if (attrs.isRegularFile() && !ignored(name))
+      {
+        stack.peek().add(name, attrs.size(), attrs.lastModifiedTime().toMillis());
+      }
+
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc)
+    {
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+    {
+      Builder builder = stack.pop();
+      if (!builder.names.isEmpty())
+      {
+        directories.put(builder.path, builder.build());
+      }
+
+      return FileVisitResult.CONTINUE;
+    }
+
+    private String relative(Path dir)
+    {
+      return repository.relativize(dir).toString().replace(File.separatorChar, '/');
+    }
+
+    // checksums, metadata and resolver bookkeeping, never the file of an artifact
+    private static boolean ignored(String name)
+    {
+      return name.endsWith(".sha1") || name.endsWith(".md5") || name.endsWith(".lastUpdated") ||
+          name.endsWith(".repositories") || name.startsWith("maven-metadata") || name.startsWith("resolver-status");
+    }
+  }
+
+  private static class Builder
+  {
+    final String path;
+    final long modified;
+    boolean leaf = true;
+
+    final List<String> names = new ArrayList<>();
+    final Map<String, long[]> attributes = new HashMap<>();
+
+    Builder(String path, long modified)
+    {
+      this.path = path;
+      this.modified = modified;
+    }
+
+    void add(String name, long size, long modified)
+    {
+      names.add(name);
+      attributes.put(name, new long[]{size, modified});
+    }
+
+    Directory build()
+    {
+      String[] sorted = names.toArray(new String[names.size()]);
+      Arrays.sort(sorted);
+
+      long[] sizes = new long[sorted.length];
+      long[] times = new long[sorted.length];
+      for (int i = 0; i < sorted.length; i++)
+      {
+        long[] a = attributes.get(sorted[i]);
+        sizes[i] = a[0];
+        times[i] = a[1];
+      }
+
+      return new Directory(modified, leaf, sorted, sizes, times, false);
+    }
+  }
+
+  private static class Directory
+  {
+    final long directoryModified;
+    final boolean leaf;
+
+    // sorted by name
+    final String[] names;
+    final long[] sizes;
+    final long[] modified;
+
+    // taken from the previous index without listing it, not stored
+    final boolean reused;
+
+    Directory(long directoryModified, boolean leaf, String[] names, long[] sizes, long[] modified, boolean reused)
+    {
+      this.directoryModified = directoryModified;
+      this.leaf = leaf;
+      this.names = names;
+      this.sizes = sizes;
+      this.modified = modified;
+      this.reused = reused;
+    }
+
+    Directory reuse()
+    {
+      return reused ? this : new Directory(directoryModified, leaf, names, sizes, modified, true);
+    }
+  }
+
+  static byte[] write(Map<String, Directory> directories) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    out.writeInt(MAGIC);
+    out.writeInt(directories.size());
+    for (Map.Entry<String, Directory> entry : directories.entrySet())
+    {
+      Directory directory = entry.getValue();
+
+      out.writeUTF(entry.getKey());
+      out.writeLong(directory.directoryModified);
+      out.writeBoolean(directory.leaf);
+      out.writeInt(directory.names.length);
+      for (int i = 0; i < directory.names.length; i++)
+      {
+        out.writeUTF(directory.names[i]);
+        out.writeLong(directory.sizes[i]);
+        out.writeLong(directory.modified[i]);
+      }
+    }
+
+    return CacheFile.seal(bytes);
+  }
+
+  static Map<String, Directory> read(byte[] bytes) throws IOException
+  {
+    DataInputStream in = CacheFile.open(bytes, 8);
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("not a repository index");
+    }
+
+    int count = in.readInt();
+    Map<String, Directory> directories = new HashMap<>(count * 2);
+    for (int d = 0; d < count; d++)
+    {
+      String path = in.readUTF();
+      long directoryModified = in.readLong();
+      boolean leaf = in.readBoolean();
+
+      int files = in.readInt();
+      String[] names = new String[files];
+      long[] sizes = new long[files];
+      long[] modified = new long[files];
+      for (int i = 0; i < files; i++)
+      {
+        names[i] = in.readUTF();
+        sizes[i] = in.readLong();
+        modified[i] = in.readLong();
+      }
+
+      directories.put(path, new Directory(directoryModified, leaf, names, sizes, modified, false));
+    }
+
+    return directories;
+  }
+}
@@ -0,0 +1,128 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+
+import java.io.File;
+
+/**
+ * Goal to write a dependency lockfile, for list-dependencies and generate-pom to use instead of the
+ * dependency graph while the project's inputs stay the same.
+ *
+ * The filters need to be the same as those of the goals using the lockfile, they are part of its
+ * input hash.
+ *
+ * @goal lock-dependencies
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class LockDependencies
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   *  @parameter default-value="${project}"
+   *  @readonly
+   */
+  private MavenProject project;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * Location of the lockfile, relative to the basedir
+   * @parameter alias="lockFile"
+   *            default-value="dependencies.lock"
+   */
+  private String lockFile;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    try
+    {
+      DependencyFilter filter = new DependencyFilter(includeScopes, excludeScopes, includes, excludes);
+
+      File file = DependencyResolver.getLockFile(project, lockFile);
+      File repository = DependencyResolver.getRepository(session);
+      String hash = LockFile.inputHash(project, filter.isEmpty() ? null : filter);
+
+      if (LockFile.read(file, hash, repository) != null)
+      {
+        log.info("Up to date: " + file);
+        return;
+      }
+
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(filter)
+          .resolve(project);
+
+      log.info("Writing to: " + file);
+      log.info("  " + resolved.getArtifacts().size() + " artifacts, input hash " + hash);
+
+      LockFile.write(file, hash, resolved.getArtifacts(), repository);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "error", "error");
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.project.MavenProject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dependency lockfile: the artifacts collected from a module's dependency graph, along with a hash of
+ * the inputs that produced them (the pom chain, the resolved project artifacts and the filter).
+ *
+ * While the hash still matches, the artifacts can be taken from the lockfile instead of building and
+ * walking the graph.  The file is deterministic, the artifacts are sorted and their files are kept
+ * relative to the local repository, so it can be checked in and shared between machines.
+ */
+public class LockFile
+{
+  private static final String SEPARATOR = "|";
+  private static final String EMPTY = "\"\"";
+  private static final String TITLE = "# Dependency Lock: ";
+
+  private LockFile()
+  {
+  }
+
+  /**
+   * Hash of everything the locked artifacts depend on: the pom chain the graph is built from, the
+   * artifacts it resolves to and the filter.  The artifacts have to be those of every scope, so the
+   * goals reading or writing lockfiles require test resolution; with only the compile ones, a changed
+   * runtime, provided or test dependency would leave a stale lockfile trusted.
+   */
+  public static String inputHash(MavenProject project, DependencyFilter filter) throws IOException
+  {
+    return new Fingerprint()
+        .addPomChain(project)
+        .addArtifacts(project.getArtifacts())
+        .add("lock")
+        .add(filter == null ? "" : filter.getKey())
+        .getValue();
+  }
+
+  /**
+   * Writes the lockfile, leaving it untouched if the contents are the same
+   *
+   * @return true if the file was replaced
+   */
+  public static boolean write(File file, String hash, List<ArtifactRecord> artifacts, File repository)
+      throws IOException
+  {
+    OutputFile output = new OutputFile(file);
+
+    try
+    {
+      RecordWriter writer = new RecordWriter(output.openChannel(), SEPARATOR, StandardCharsets.UTF_8);
+      try
+      {
+        writer.line(TITLE);
+        writer.line("#  Input Hash");
+        writer.line(hash);
+
+        writer.line("\n\n# Dependencies: ");
+        writer.line("#  GroupId | ArtifactId | Version | Classifier | Type | Scope | Snapshot | File");
+
+        String base = repository == null ? null : repository.getAbsolutePath() + File.separator;
+        for (ArtifactRecord artifact : artifacts)
+        {
+          writer.field(artifact.getGroupId())
+              .field(artifact.getArtifactId())
+              .field(artifact.getVersion())
+              .field(encode(artifact.getClassifier()))
+              .field(artifact.getType())
+              .field(encode(artifact.getScope()))
+              .field(artifact.isSnapshot() ? "true" : "false");
+
+          StringBuilder path = writer.field();
+          if (artifact.getFile() != null)
+          {
+            String absolute = artifact.getFile().getAbsolutePath();
+            if (base != null && absolute.startsWith(base))
+            {
+              path.append(absolute.substring(base.length()).replace(File.separatorChar, '/'));
+            }
+            else
+            {
+              path.append(absolute);
+            }
+          }
+
+          writer.endRecord();
+        }
+      }
+      finally
+      {
+        writer.close();
+      }
+
+      return output.commit();
+    }
+    finally
+    {
+      output.discard();
+    }
+  }
+
+  /**
+   * Reads the locked artifacts
+   *
+   * @param hash the input hash the lockfile has to match, null to take it whatever its inputs
+   * @return the artifacts, in the order they were written, or null if there is no lockfile or it was
+   *         written from different inputs
+   */
+  public static List<ArtifactRecord> read(File file, String hash, File repository) throws IOException
+  {
+    if (!file.isFile())
+    {
+      return null;
+    }
+
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+    {
+      String locked = null;
+      List<ArtifactRecord> artifacts = new ArrayList<>();
+
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.isEmpty() || line.startsWith("#"))
+        {
+          continue;
+        }
+
+        // the hash comes first, nothing else matters if it's stale
+        if (locked == null)
+        {
+          locked = line.trim();
+          if (hash != null && !locked.equals(hash))
+          {
+            return null;
+          }
+          continue;
+        }
+
+        String[] fields = TextListingReader.split(line, SEPARATOR);
+        if (fields.length != 8)
+        {
+          throw new IOException("Malformed lockfile " + file + ": " + line);
+        }
+
+        File artifactFile = null;
+        if (!fields[7].isEmpty())
+        {
+          artifactFile = new File(fields[7].replace('/', File.separatorChar));
+          if (!artifactFile.isAbsolute() && repository != null)
+          {
+            artifactFile = new File(repository, artifactFile.getPath());
+          }
+        }
+
+        artifacts.add(new ArtifactRecord(fields[0], fields[1], fields[2], decode(fields[3]), fields[4],
+            decode(fields[5]), Boolean.parseBoolean(fields[6]), artifactFile));
+      }
+
+      return locked == null ? null : artifacts;
+    }
+  }
+
+  /**
+   * True if the file looks like a lockfile, as opposed to e.g. a dependency listing
+   */
+  public static boolean isLockFile(File file) throws IOException
+  {
+    // compared as bytes, a binary or gzipped listing isn't valid UTF-8
+    byte[] title = TITLE.trim().getBytes(StandardCharsets.UTF_8);
+    byte[] head = new byte[title.length];
+
+    try (InputStream in = Files.newInputStream(file.toPath()))
+    {
+      int read = 0;
+      int n;
+      while (read < head.length && (n = in.read(head, read, head.length - read)) >= 0)
+      {
+        read += n;
+      }
+      return read == head.length && Arrays.equals(head, title);
+    }
+  }
+
+  // the classifier and scope can be missing or empty, and the poms generated from them tell the two apart
+  private static String encode(String value)
+  {
+    if (value == null)
+    {
+      return "";
+    }
+
+    return value.isEmpty() ? EMPTY : value;
+  }
+
+  private static String decode(String value)
+  {
+    if (value.isEmpty())
+    {
+      return null;
+    }
+
+    return value.equals(EMPTY) ? "" : value;
+  }
+}
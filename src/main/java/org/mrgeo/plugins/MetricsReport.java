@@ -0,0 +1,146 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Goal to aggregate the phase metrics of every execution of our goals in the build so far.
+ *
+ * Run it after the lifecycle, e.g. "mvn install pomtools:metrics-report", and it sees every module.
+ *
+ * @goal metrics-report
+ * @aggregator
+ * @threadSafe
+ */
+public class MetricsReport
+    extends AbstractMojo
+{
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * Location of the report
+   * @parameter alias="output"
+   *            default-value="${project.build.directory}/phase-metrics.properties"
+   */
+  private File outputFile;
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    List<PhaseMetrics> all = PhaseMetrics.getAll(session);
+
+    // goal -> phase -> {executions, wall nanos, allocated bytes}
+    Map<String, Map<String, long[]>> totals = new TreeMap<>();
+    for (PhaseMetrics metrics : all)
+    {
+      Map<String, long[]> goal = totals.get(metrics.getGoal());
+      if (goal == null)
+      {
+        goal = new TreeMap<>();
+        totals.put(metrics.getGoal(), goal);
+      }
+
+      for (Map.Entry<String, long[]> phase : metrics.getPhases().entrySet())
+      {
+        long[] total = goal.get(phase.getKey());
+        if (total == null)
+        {
+          total = new long[]{0, 0, 0};
+          goal.put(phase.getKey(), total);
+        }
+
+        total[0]++;
+        total[1] += phase.getValue()[0];
+        total[2] = total[2] < 0 || phase.getValue()[1] < 0 ? -1 : total[2] + phase.getValue()[1];
+      }
+    }
+
+    try
+    {
+      log.info("Writing to: " + outputFile);
+      log.info("  " + all.size() + " executions");
+
+      OutputFile output = new OutputFile(outputFile);
+
+      try
+      {
+        RecordWriter writer = new RecordWriter(output.openChannel(), "|");
+        try
+        {
+          writer.line("# Totals: ");
+          writer.line("#  Goal | Phase | Executions | Time (us) | Allocated (bytes)");
+
+          for (Map.Entry<String, Map<String, long[]>> goal : totals.entrySet())
+          {
+            for (Map.Entry<String, long[]> phase : goal.getValue().entrySet())
+            {
+              long[] total = phase.getValue();
+
+              writer.field(goal.getKey())
+                  .field(phase.getKey())
+                  .field().append(total[0]);
+              writer.field().append(total[1] / 1000);
+              writer.field().append(total[2]);
+
+              log.info("  " + writer.record());
+              writer.endRecord();
+            }
+          }
+
+          writer.line("\n");
+          PhaseMetrics.writeHeader(writer);
+          for (PhaseMetrics metrics : all)
+          {
+            metrics.write(writer);
+          }
+        }
+        finally
+        {
+          writer.close();
+        }
+
+        output.commit();
+      }
+      finally
+      {
+        output.discard();
+      }
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "IOException", "IOException");
+    }
+  }
+}
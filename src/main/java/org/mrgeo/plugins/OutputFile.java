@@ -0,0 +1,176 @@
+package org.mrgeo.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An output file that is written to a temporary sibling first, and only replaces the real file when
+ * the contents actually changed.  An unchanged output keeps its timestamp, so it doesn't invalidate
+ * anything downstream that depends on it.
+ *
+ * Also keeps the fingerprint of the inputs that produced the file, for the incremental mode.
+ */
+public class OutputFile
+{
+  private final File file;
+  private File tmp = null;
+  private final File fingerprintFile;
+
+  public OutputFile(File file)
+  {
+    this.file = file;
+    this.fingerprintFile = new File(file.getParentFile(), file.getName() + ".fingerprint");
+  }
+
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * True if the output exists and was produced from inputs with the same fingerprint
+   */
+  public boolean isUpToDate(String fingerprint) throws IOException
+  {
+    if (!file.isFile() || !fingerprintFile.isFile())
+    {
+      return false;
+    }
+
+    String last = new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8);
+    return last.trim().equals(fingerprint);
+  }
+
+  public void saveFingerprint(String fingerprint) throws IOException
+  {
+    Files.write(fingerprintFile.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Opens the temporary file for writing, the stream must be closed before calling commit()
+   */
+  @SuppressWarnings("ResultOfMethodCallIgnored")
+  public OutputStream open() throws IOException
+  {
+    if (!file.getParentFile().exists())
+    {
+      file.getParentFile().mkdirs();
+    }
+
+    return new FileOutputStream(createTemp());
+  }
+
+  /**
+   * Opens the temporary file as a channel, which must be closed before calling commit()
+   */
+  @SuppressWarnings("ResultOfMethodCallIgnored")
+  public FileChannel openChannel() throws IOException
+  {
+    if (!file.getParentFile().exists())
+    {
+      file.getParentFile().mkdirs();
+    }
+
+    return FileChannel.open(createTemp().toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Moves the temporary file over the real one, unless they have the same contents.
+   *
+   * @return true if the output file was replaced
+   */
+  public boolean commit() throws IOException
+  {
+    if (file.isFile() && sameContents(tmp, file))
+    {
+      Files.delete(tmp.toPath());
+      tmp = null;
+      return false;
+    }
+
+    try
+    {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (AtomicMoveNotSupportedException e)
+    {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    tmp = null;
+
+    return true;
+  }
+
+  /**
+   * Throws away the temporary file, leaving any existing output as it was.  Does nothing once the
+   * output is committed, so writers call it in a finally block to clean up after a failed write.
+   */
+  public void discard() throws IOException
+  {
+    if (tmp != null)
+    {
+      Files.deleteIfExists(tmp.toPath());
+      tmp = null;
+    }
+  }
+
+  // unique per writer, so concurrent writers of the same output (mvn -T) don't write over each other's
+  // temporary file.  The last one to commit wins.
+  private File createTemp() throws IOException
+  {
+    tmp = File.createTempFile(file.getName() + ".", ".tmp", file.getParentFile());
+    return tmp;
+  }
+
+  private static boolean sameContents(File a, File b) throws IOException
+  {
+    if (a.length() != b.length())
+    {
+      return false;
+    }
+
+    try (InputStream ia = new BufferedInputStream(new FileInputStream(a));
+         InputStream ib = new BufferedInputStream(new FileInputStream(b)))
+    {
+      byte[] ba = new byte[8192];
+      byte[] bb = new byte[8192];
+
+      int read;
+      while ((read = ia.read(ba)) > 0)
+      {
+        int offset = 0;
+        while (offset < read)
+        {
+          int r = ib.read(bb, offset, read - offset);
+          if (r < 0)
+          {
+            return false;
+          }
+          offset += r;
+        }
+
+        for (int i = 0; i < read; i++)
+        {
+          if (ba[i] != bb[i])
+          {
+            return false;
+          }
+        }
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,101 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Collects the artifacts of a dependency graph like DependencyVisitor does, but splits the child
+ * subtrees of the top few levels across a ForkJoinPool.  Below that each subtree is walked serially
+ * by a DependencyVisitor, and the per-task sets are merged and sorted at the end, so the result is
+ * identical to the serial visitor's.
+ */
+public class ParallelDependencyTraversal
+{
+  // levels of the tree that are split into separate tasks, deeper subtrees are walked serially
+  private static final int FORK_DEPTH = 3;
+
+  private static ForkJoinPool pool = null;
+
+  private ParallelDependencyTraversal()
+  {
+  }
+
+  public static List<ArtifactRecord> collect(DependencyNode root, ArtifactFilter filter)
+  {
+    Set<ArtifactRecord> artifacts = getPool().invoke(new CollectTask(root, filter, 0));
+
+    List<ArtifactRecord> sorted = new ArrayList<>(artifacts);
+    Collections.sort(sorted, ArtifactRecord.BY_NAME);
+
+    return sorted;
+  }
+
+  private static synchronized ForkJoinPool getPool()
+  {
+    if (pool == null)
+    {
+      pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    return pool;
+  }
+
+  private static class CollectTask extends RecursiveTask<Set<ArtifactRecord>>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final DependencyNode node;
+    private final ArtifactFilter filter;
+    private final int depth;
+
+    CollectTask(DependencyNode node, ArtifactFilter filter, int depth)
+    {
+      this.node = node;
+      this.filter = filter;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Set<ArtifactRecord> compute()
+    {
+      List<DependencyNode> children = node.getChildren();
+      if (depth >= FORK_DEPTH || children.size() < 2)
+      {
+        DependencyVisitor visitor = new DependencyVisitor(filter);
+        node.accept(visitor);
+
+        return visitor.getArtifactSet();
+      }
+
+      // same rule as the visitor: the root is always kept, anything else rejected is pruned
+      if (filter != null && node.getParent() != null && !filter.include(node.getArtifact()))
+      {
+        return Collections.emptySet();
+      }
+
+      List<CollectTask> tasks = new ArrayList<>(children.size());
+      for (DependencyNode child : children)
+      {
+        tasks.add(new CollectTask(child, filter, depth + 1));
+      }
+      invokeAll(tasks);
+
+      Set<ArtifactRecord> artifacts = new HashSet<>();
+      artifacts.add(ArtifactRecord.of(node.getArtifact()));
+      for (CollectTask task : tasks)
+      {
+        artifacts.addAll(task.join());
+      }
+
+      return artifacts;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Wall time and allocated bytes of the phases of one goal execution on one module.
+ *
+ * Phases are timed one at a time (start, then stop) on the thread running the execution, and a phase
+ * started more than once adds up.  Allocations are those of that thread, as reported by the JVM, and -1
+ * when it can't tell.  Work handed to other threads (the parallel traversal) only shows up in the time.
+ *
+ * Every execution is also registered with its session, so the metrics-report goal can aggregate them
+ * across the reactor.
+ */
+public class PhaseMetrics
+{
+  public static final String GRAPH_BUILD = "graph-build";
+  public static final String VISIT = "visit";
+  public static final String READ_LOCK = "read-lock";
+  public static final String READ_BASELINE = "read-baseline";
+  public static final String INDEX = "index";
+  public static final String CHECKSUM = "checksum";
+  public static final String SCAN = "scan";
+  public static final String MERGE = "merge";
+  public static final String SERIALIZE = "serialize";
+  public static final String WRITE = "write";
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  // same lifetime as the DependencyGraphCache, the execution request is shared by the whole build
+  private static final Map<MavenExecutionRequest, List<PhaseMetrics>> sessions = new WeakHashMap<>();
+
+  private final String goal;
+  private final String module;
+
+  // phase -> {wall nanos, allocated bytes}, in the order the phases first ran
+  private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+  private String current = null;
+  private long startTime;
+  private long startAllocated;
+
+  public PhaseMetrics(String goal, String module)
+  {
+    this.goal = goal;
+    this.module = module;
+  }
+
+  /**
+   * Registers the metrics with the session, for the metrics-report goal
+   */
+  public static void register(MavenSession session, PhaseMetrics metrics)
+  {
+    synchronized (sessions)
+    {
+      List<PhaseMetrics> all = sessions.get(session.getRequest());
+      if (all == null)
+      {
+        all = new ArrayList<>();
+        sessions.put(session.getRequest(), all);
+      }
+      all.add(metrics);
+    }
+  }
+
+  /**
+   * All the metrics registered with the session so far, in the order they were registered
+   */
+  public static List<PhaseMetrics> getAll(MavenSession session)
+  {
+    synchronized (sessions)
+    {
+      List<PhaseMetrics> all = sessions.get(session.getRequest());
+      return all == null ? Collections.<PhaseMetrics>emptyList() : new ArrayList<>(all);
+    }
+  }
+
+  public String getGoal()
+  {
+    return goal;
+  }
+
+  public String getModule()
+  {
+    return module;
+  }
+
+  /**
+   * The phases, in the order they first ran, with their {wall nanos, allocated bytes}
+   */
+  public Map<String, long[]> getPhases()
+  {
+    return phases;
+  }
+
+  /**
+   * Starts timing a phase, stopping the current one if there is one
+   */
+  public void start(String phase)
+  {
+    if (current != null)
+    {
+      stop();
+    }
+
+    current = phase;
+    startAllocated = allocated();
+    startTime = System.nanoTime();
+  }
+
+  public void stop()
+  {
+    long time = System.nanoTime() - startTime;
+    long allocated = allocated();
+
+    if (current == null)
+    {
+      return;
+    }
+
+    long[] totals = phases.get(current);
+    if (totals == null)
+    {
+      totals = new long[]{0, 0};
+      phases.put(current, totals);
+    }
+
+    totals[0] += time;
+    if (allocated < 0 || startAllocated < 0 || totals[1] < 0)
+    {
+      totals[1] = -1;
+    }
+    else
+    {
+      totals[1] += allocated - startAllocated;
+    }
+
+    current = null;
+  }
+
+  /**
+   * Writes the header of the metrics records
+   */
+  static void writeHeader(RecordWriter writer) throws IOException
+  {
+    writer.line("# Phase Metrics: ");
+    writer.line("#  Goal | Module | Phase | Time (us) | Allocated (bytes)");
+  }
+
+  /**
+   * Writes a record per phase
+   */
+  void write(RecordWriter writer) throws IOException
+  {
+    for (Map.Entry<String, long[]> phase : phases.entrySet())
+    {
+      writer.field(goal)
+          .field(module)
+          .field(phase.getKey())
+          .field().append(phase.getValue()[0] / 1000);
+      writer.field().append(phase.getValue()[1]);
+      writer.endRecord();
+    }
+  }
+
+  /**
+   * Writes the metrics to a file of their own
+   */
+  public void save(File file) throws IOException
+  {
+    OutputFile output = new OutputFile(file);
+
+    try
+    {
+      RecordWriter writer = new RecordWriter(output.openChannel(), "|");
+      try
+      {
+        writeHeader(writer);
+        write(writer);
+      }
+      finally
+      {
+        writer.close();
+      }
+
+      output.commit();
+    }
+    finally
+    {
+      output.discard();
+    }
+  }
+
+  private static long allocated()
+  {
+    if (threads instanceof com.sun.management.ThreadMXBean)
+    {
+      com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) threads;
+      if (mx.isThreadAllocatedMemorySupported() && mx.isThreadAllocatedMemoryEnabled())
+      {
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+
+    return -1;
+  }
+}
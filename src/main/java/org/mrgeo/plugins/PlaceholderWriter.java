@@ -0,0 +1,211 @@
+package org.mrgeo.plugins;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer that replaces literal strings as the text streams through, in a single pass.
+ *
+ * At each position the patterns are tried in the order given and the first one that matches wins,
+ * so a longer pattern that starts with a shorter one (e.g. the target dir under the basedir) needs
+ * to come first.  Only enough text to recognize the longest pattern is held back, the rest goes
+ * straight to the underlying writer.
+ */
+public class PlaceholderWriter extends Writer
+{
+  private final Writer out;
+  private final String[] patterns;
+  private final String[] replacements;
+
+  // first characters of the patterns, for a quick rejection of most positions
+  private final String firstChars;
+  private final int maxLength;
+
+  private final char[] pending;
+  private int count = 0;
+
+  private long written = 0;
+
+  public PlaceholderWriter(Writer out, String[] patterns, String[] replacements)
+  {
+    if (patterns.length != replacements.length)
+    {
+      throw new IllegalArgumentException("Need a replacement for each pattern");
+    }
+
+    this.out = out;
+    this.patterns = patterns;
+    this.replacements = replacements;
+
+    StringBuilder first = new StringBuilder();
+    int max = 1;
+    for (String pattern : patterns)
+    {
+      if (pattern.isEmpty())
+      {
+        throw new IllegalArgumentException("Empty pattern");
+      }
+
+      first.append(pattern.charAt(0));
+      max = Math.max(max, pattern.length());
+    }
+
+    firstChars = first.toString();
+    maxLength = max;
+
+    pending = new char[Math.max(8192, maxLength * 2)];
+  }
+
+  /**
+   * Number of characters written to the underlying writer, after substitution
+   */
+  public long getLength()
+  {
+    return written;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException
+  {
+    while (len > 0)
+    {
+      int n = Math.min(len, pending.length - count);
+      System.arraycopy(cbuf, off, pending, count, n);
+
+      count += n;
+      off += n;
+      len -= n;
+
+      if (count == pending.length)
+      {
+        drain(false);
+      }
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException
+  {
+    while (len > 0)
+    {
+      int n = Math.min(len, pending.length - count);
+      str.getChars(off, off + n, pending, count);
+
+      count += n;
+      off += n;
+      len -= n;
+
+      if (count == pending.length)
+      {
+        drain(false);
+      }
+    }
+  }
+
+  @Override
+  public void write(int c) throws IOException
+  {
+    pending[count++] = (char) c;
+    if (count == pending.length)
+    {
+      drain(false);
+    }
+  }
+
+  /**
+   * Flushes the underlying writer.  Text that could still be the start of a pattern is held back until
+   * more arrives or the writer is closed.
+   */
+  @Override
+  public void flush() throws IOException
+  {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    drain(true);
+    out.close();
+  }
+
+  private void drain(boolean eof) throws IOException
+  {
+    // unless we're at the end, only positions where the longest pattern would fit can be decided
+    int limit = eof ? count : count - maxLength + 1;
+
+    int start = 0;
+    int i = 0;
+    while (i < limit)
+    {
+      int match = -1;
+      if (firstChars.indexOf(pending[i]) >= 0)
+      {
+        match = matchAt(i);
+      }
+
+      if (match < 0)
+      {
+        i++;
+      }
+      else
+      {
+        emit(pending, start, i - start);
+
+        String replacement = replacements[match];
+        out.write(replacement);
+        written += replacement.length();
+
+        i += patterns[match].length();
+        start = i;
+      }
+    }
+
+    if (eof)
+    {
+      emit(pending, start, count - start);
+      count = 0;
+    }
+    else
+    {
+      emit(pending, start, i - start);
+
+      count -= i;
+      System.arraycopy(pending, i, pending, 0, count);
+    }
+  }
+
+  private int matchAt(int pos)
+  {
+    for (int p = 0; p < patterns.length; p++)
+    {
+      String pattern = patterns[p];
+      int len = pattern.length();
+
+      if (pos + len <= count)
+      {
+        int j = 0;
+        while (j < len && pending[pos + j] == pattern.charAt(j))
+        {
+          j++;
+        }
+
+        if (j == len)
+        {
+          return p;
+        }
+      }
+    }
+
+    return -1;
+  }
+
+  private void emit(char[] chars, int off, int len) throws IOException
+  {
+    if (len > 0)
+    {
+      out.write(chars, off, len);
+      written += len;
+    }
+  }
+}
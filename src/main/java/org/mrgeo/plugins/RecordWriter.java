@@ -0,0 +1,152 @@
+package org.mrgeo.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writes separator-delimited records to a channel.
+ *
+ * A single record buffer is reused for every line and encoded straight into a byte buffer that is
+ * written to the channel when it fills, so writing a record doesn't allocate.  The current record
+ * can be looked at (e.g. for logging) before it is ended.
+ */
+public class RecordWriter implements Closeable
+{
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  private final WritableByteChannel channel;
+  private final String separator;
+  private final CharsetEncoder encoder;
+
+  private final StringBuilder record = new StringBuilder(256);
+  private boolean firstField = true;
+
+  private char[] chars = new char[256];
+  private CharBuffer charBuffer = CharBuffer.wrap(chars);
+  private final ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+
+  public RecordWriter(WritableByteChannel channel, String separator)
+  {
+    this(channel, separator, Charset.defaultCharset());
+  }
+
+  public RecordWriter(WritableByteChannel channel, String separator, Charset charset)
+  {
+    this.channel = channel;
+    this.separator = separator;
+    // same as a PrintWriter, anything that can't be encoded comes out as '?'
+    this.encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /**
+   * Starts a new field in the current record
+   *
+   * @return the record buffer, to append the field's value to
+   */
+  public StringBuilder field()
+  {
+    if (firstField)
+    {
+      firstField = false;
+    }
+    else
+    {
+      record.append(separator);
+    }
+
+    return record;
+  }
+
+  public RecordWriter field(CharSequence value)
+  {
+    field().append(value);
+    return this;
+  }
+
+  /**
+   * The current (not yet ended) record
+   */
+  public CharSequence record()
+  {
+    return record;
+  }
+
+  public void endRecord() throws IOException
+  {
+    record.append(LINE_SEPARATOR);
+    encode();
+
+    record.setLength(0);
+    firstField = true;
+  }
+
+  /**
+   * Writes a line as-is, outside any record (e.g. a comment)
+   */
+  public void line(CharSequence text) throws IOException
+  {
+    record.setLength(0);
+    record.append(text);
+
+    endRecord();
+  }
+
+  public void flush() throws IOException
+  {
+    bytes.flip();
+    while (bytes.hasRemaining())
+    {
+      channel.write(bytes);
+    }
+    bytes.clear();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    try
+    {
+      flush();
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  private void encode() throws IOException
+  {
+    int length = record.length();
+    if (length > chars.length)
+    {
+      chars = new char[Math.max(length, chars.length * 2)];
+      charBuffer = CharBuffer.wrap(chars);
+    }
+
+    record.getChars(0, length, chars, 0);
+    charBuffer.clear();
+    charBuffer.limit(length);
+
+    CoderResult result;
+    while ((result = encoder.encode(charBuffer, bytes, true)).isOverflow())
+    {
+      flush();
+    }
+
+    if (result.isError())
+    {
+      result.throwException();
+    }
+
+    encoder.reset();
+  }
+}
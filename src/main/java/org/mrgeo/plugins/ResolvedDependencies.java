@@ -0,0 +1,54 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.util.List;
+
+/**
+ * The dependency graph of a module along with the artifacts collected from it, as produced by a
+ * DependencyResolver.
+ */
+public class ResolvedDependencies
+{
+  private final DependencyNode root;
+  private final List<ArtifactRecord> artifacts;
+  private final long skippedNodes;
+  private final boolean locked;
+
+  ResolvedDependencies(DependencyNode root, List<ArtifactRecord> artifacts, long skippedNodes, boolean locked)
+  {
+    this.root = root;
+    this.artifacts = artifacts;
+    this.skippedNodes = skippedNodes;
+    this.locked = locked;
+  }
+
+  /**
+   * The dependency graph, null when the artifacts came from a lockfile
+   */
+  public DependencyNode getRoot()
+  {
+    return root;
+  }
+
+  public List<ArtifactRecord> getArtifacts()
+  {
+    return artifacts;
+  }
+
+  /**
+   * Number of graph nodes a memoized traversal didn't have to visit
+   */
+  public long getSkippedNodes()
+  {
+    return skippedNodes;
+  }
+
+  /**
+   * True if the artifacts came from a lockfile, without building the graph
+   */
+  public boolean isLocked()
+  {
+    return locked;
+  }
+}
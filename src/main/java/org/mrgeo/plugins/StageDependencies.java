@@ -0,0 +1,203 @@
+package org.mrgeo.plugins;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Goal to stage the files of the dependencies in a directory, e.g. the lib/ directory of a deployment
+ * image.
+ *
+ * Only new or changed files are staged, by hard link when possible and by copy otherwise, and files of
+ * dependencies no longer listed are deleted.  See StagingDirectory.
+ *
+ * @goal stage-dependencies
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class StageDependencies
+    extends AbstractMojo
+{
+  /**
+   * The dependency tree builder to use.
+   * @component
+   */
+  private DependencyGraphBuilder dependencyGraphBuilder;
+
+  /**
+   *  @parameter default-value="${project}"
+   *  @readonly
+   */
+  private MavenProject project;
+
+  /**
+   * The current build session
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * Directory to stage the files in
+   * @parameter alias="stagingDirectory"
+   *            default-value="${project.build.directory}/lib"
+   */
+  private File stagingDirectory;
+
+  /**
+   * Link the files to the local repository when possible, instead of copying them.  Turn it off if
+   * anything modifies the staged files in place.
+   * @parameter alias="hardLinks"
+   *            default-value="true"
+   */
+  private boolean hardLinks;
+
+  /**
+   * Compare staged files with the same size but another timestamp by checksum, instead of replacing them
+   * @parameter alias="checksums"
+   *            default-value="true"
+   */
+  private boolean checksums;
+
+  /**
+   * Number of files staged at the same time
+   * @parameter alias="threads"
+   *            default-value="4"
+   */
+  private int threads;
+
+  /**
+   * Where the index of the local repository is kept between builds.  Set it to a file outside
+   * the build directory (e.g. under ~/.m2) to share it between modules and checkouts.
+   * @parameter alias="repositoryIndexFile"
+   *            default-value="${project.build.directory}/pomtools-repository.index"
+   */
+  private File repositoryIndexFile;
+
+  /**
+   * Where the checksums are kept between builds, in the build directory unless it is set to a shared
+   * file (e.g. under ~/.m2)
+   * @parameter alias="checksumCacheFile"
+   *            default-value="${project.build.directory}/pomtools-checksums.cache"
+   */
+  private File checksumCacheFile;
+
+  /**
+   * Lockfile written by lock-dependencies, relative to the basedir.  While its input hash matches,
+   * the dependencies are taken from it instead of building the dependency graph.
+   * @parameter alias="lockFile"
+   */
+  private String lockFile;
+
+  /**
+   * Comma separated scopes to include, all scopes when empty
+   * @parameter alias="includeScopes"
+   */
+  private String includeScopes;
+
+  /**
+   * Comma separated scopes to exclude
+   * @parameter alias="excludeScopes"
+   */
+  private String excludeScopes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to include, all dependencies when empty
+   * @parameter alias="includes"
+   */
+  private String includes;
+
+  /**
+   * Comma separated groupId[:artifactId[:type[:version]]] patterns (with '*' wildcards) of the
+   * dependencies to exclude
+   * @parameter alias="excludes"
+   */
+  private String excludes;
+
+  public void execute()
+      throws MojoExecutionException
+  {
+    Log log = getLog();
+
+    try
+    {
+      PhaseMetrics metrics = new PhaseMetrics("stage-dependencies", project.getId());
+
+      ResolvedDependencies resolved = new DependencyResolver(session, dependencyGraphBuilder)
+          .setFilter(new DependencyFilter(includeScopes, excludeScopes, includes, excludes))
+          .setLockFile(lockFile)
+          .resolve(project, metrics);
+
+      metrics.start(PhaseMetrics.INDEX);
+      LocalRepositoryIndex index = LocalRepositoryIndex.getInstance(session, repositoryIndexFile, log);
+
+      // by file name, the same way they're named in the listing
+      Map<String, File> files = new TreeMap<>();
+      for (ArtifactRecord artifact : resolved.getArtifacts())
+      {
+        // the project itself
+        if (artifact.getScope() == null)
+        {
+          continue;
+        }
+
+        LocalRepositoryIndex.Entry entry = ListDependencies.findFile(index, artifact);
+        if (entry == null)
+        {
+          log.warn("Not in the local repository, not staged: " + artifact);
+          continue;
+        }
+
+        File previous = files.put(entry.getFile().getName(), entry.getFile());
+        if (previous != null && !previous.equals(entry.getFile()))
+        {
+          log.warn("Both " + previous + " and " + entry.getFile() + " are staged as " +
+              entry.getFile().getName() + ", keeping " + previous);
+          files.put(previous.getName(), previous);
+        }
+      }
+
+      log.info("Staging " + files.size() + " files to: " + stagingDirectory);
+
+      metrics.start(PhaseMetrics.WRITE);
+      StagingDirectory staging = new StagingDirectory(stagingDirectory,
+          checksums ? ChecksumCache.getInstance(session, checksumCacheFile, log) : null, hardLinks);
+      staging.stage(files, threads, StagingDirectory.extensions(files.keySet()));
+      metrics.stop();
+
+      log.info("  " + staging.getLinked() + " linked, " + staging.getCopied() + " copied, " +
+          staging.getUnchanged() + " unchanged, " + staging.getDeleted() + " deleted");
+
+      PhaseMetrics.register(session, metrics);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      throw new MojoExecutionException(e, "error", "error");
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package org.mrgeo.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A directory holding a copy of a set of files, brought up to date incrementally.
+ *
+ * A staged file that has the same size and timestamp as its source is left alone, and one with the
+ * same size but another timestamp is compared by checksum before being replaced.  The sources of those
+ * are hashed up front, in one batch through the checksum cache; the staged files are hashed directly,
+ * they are build outputs and don't belong in the cache.  New or changed files
+ * are hard linked to their source where the file system allows it (no copy at all), and otherwise
+ * copied with FileChannel.transferTo, which lets the OS do the copy.  Either way the staged file keeps
+ * its source's timestamp, so the next run sees it as unchanged.  Files left over from earlier runs are
+ * deleted.
+ */
+public class StagingDirectory
+{
+  private final File directory;
+  private final ChecksumCache checksums;
+  private final boolean hardLinks;
+
+  private final AtomicInteger linked = new AtomicInteger();
+  private final AtomicInteger copied = new AtomicInteger();
+  private final AtomicInteger unchanged = new AtomicInteger();
+  private final AtomicInteger deleted = new AtomicInteger();
+
+  /**
+   * @param checksums to compare files that differ only by timestamp, may be null to always replace them
+   * @param hardLinks link the files to their source when possible, instead of copying them.  A linked
+   *                  file is the source file, anything modifying it in place modifies the source too.
+   */
+  public StagingDirectory(File directory, ChecksumCache checksums, boolean hardLinks)
+  {
+    this.directory = directory;
+    this.checksums = checksums;
+    this.hardLinks = hardLinks;
+  }
+
+  /**
+   * Stages the files, in parallel, and deletes the stale ones
+   *
+   * @param files   the source of each staged file, by staged file name
+   * @param threads number of files staged at the same time
+   * @param stale   only stale files with one of these extensions are deleted
+   */
+  public void stage(Map<String, File> files, int threads, Set<String> stale) throws IOException
+  {
+    Files.createDirectories(directory.toPath());
+
+    final Map<File, String> sums = sourceChecksums(files);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try
+    {
+      List<Future<Void>> futures = new ArrayList<>(files.size());
+      for (final Map.Entry<String, File> file : files.entrySet())
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws IOException
+          {
+            stage(file.getValue(), new File(directory, file.getKey()), sums.get(file.getValue()));
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+    catch (ExecutionException e)
+    {
+      throw new IOException("Couldn't stage to " + directory, e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted staging to " + directory, e);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    File[] existing = directory.listFiles();
+    if (existing != null)
+    {
+      for (File file : existing)
+      {
+        if (file.isFile() && !files.containsKey(file.getName()) && stale.contains(extension(file.getName())))
+        {
+          Files.delete(file.toPath());
+          deleted.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  public int getLinked()
+  {
+    return linked.get();
+  }
+
+  public int getCopied()
+  {
+    return copied.get();
+  }
+
+  public int getUnchanged()
+  {
+    return unchanged.get();
+  }
+
+  public int getDeleted()
+  {
+    return deleted.get();
+  }
+
+  /**
+   * The checksums of the sources whose staged file has the same size but another timestamp, the only
+   * ones that get compared
+   */
+  private Map<File, String> sourceChecksums(Map<String, File> files) throws IOException
+  {
+    if (checksums == null)
+    {
+      return Collections.emptyMap();
+    }
+
+    List<File> sources = new ArrayList<>();
+    for (Map.Entry<String, File> file : files.entrySet())
+    {
+      File source = file.getValue();
+      File target = new File(directory, file.getKey());
+      if (target.isFile() && target.length() == source.length() && target.lastModified() != source.lastModified())
+      {
+        sources.add(source);
+      }
+    }
+
+    return sources.isEmpty() ? Collections.<File, String>emptyMap() : checksums.checksums(sources);
+  }
+
+  /**
+   * @param checksum of the source, null if it isn't to be compared
+   */
+  private void stage(File source, File target, String checksum) throws IOException
+  {
+    if (target.isFile() && target.length() == source.length())
+    {
+      if (target.lastModified() == source.lastModified())
+      {
+        unchanged.incrementAndGet();
+        return;
+      }
+
+      if (checksum != null && checksum.equals(ChecksumCache.hash(target)))
+      {
+        target.setLastModified(source.lastModified());
+        unchanged.incrementAndGet();
+        return;
+      }
+    }
+
+    if (hardLinks)
+    {
+      Files.deleteIfExists(target.toPath());
+
+      try
+      {
+        Files.createLink(target.toPath(), source.toPath());
+        linked.incrementAndGet();
+
+        return;
+      }
+      catch (UnsupportedOperationException | FileSystemException e)
+      {
+        // no hard links here, or not across file systems
+      }
+    }
+
+    copy(source, target);
+    copied.incrementAndGet();
+  }
+
+  private static void copy(File source, File target) throws IOException
+  {
+    File tmp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+    try
+    {
+      try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+           FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE,
+               StandardOpenOption.TRUNCATE_EXISTING))
+      {
+        long size = in.size();
+        long position = 0;
+        while (position < size)
+        {
+          position += in.transferTo(position, size - position, out);
+        }
+      }
+
+      tmp.setLastModified(source.lastModified());
+
+      try
+      {
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally
+    {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  static String extension(String name)
+  {
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot + 1);
+  }
+
+  /**
+   * The extensions of the files, for stage()
+   */
+  static Set<String> extensions(Iterable<String> names)
+  {
+    Set<String> extensions = new HashSet<>();
+    extensions.add("jar");
+    for (String name : names)
+    {
+      extensions.add(extension(name));
+    }
+
+    return extensions;
+  }
+}
@@ -0,0 +1,171 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.ArtifactUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a text listing.
+ *
+ * The records of the Main Jar and Dependencies sections are read, anything else is skipped.  The
+ * Dependencies header says which of the Name, Size, Path and SHA-256 columns follow the leading GroupId,
+ * ArtifactId, Version, Classifier, Type and Scope ones.
+ */
+class TextListingReader extends ListingReader
+{
+  private static final String MAIN_JAR = "# Main Jar:";
+  private static final String DEPENDENCIES = "# Dependencies:";
+  private static final String COLUMNS = "#  ";
+
+  private final BufferedReader reader;
+  private final String separator;
+
+  private String section = null;
+
+  // columns of the dependencies, -1 when missing
+  private int nameColumn = 6;
+  private int sizeColumn = -1;
+  private int pathColumn = -1;
+  private int checksumColumn = -1;
+
+  TextListingReader(File file, InputStream in, String separator)
+  {
+    super(file);
+    this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    this.separator = separator;
+  }
+
+  @Override
+  public boolean next() throws IOException
+  {
+    String line;
+    while ((line = reader.readLine()) != null)
+    {
+      if (line.startsWith("# ") && line.trim().endsWith(":"))
+      {
+        section = line.startsWith(MAIN_JAR) ? MAIN_JAR : line.startsWith(DEPENDENCIES) ? DEPENDENCIES : null;
+        continue;
+      }
+
+      if (line.startsWith(COLUMNS) && section == DEPENDENCIES)
+      {
+        columns(line.substring(COLUMNS.length()).split(" \\| "));
+        continue;
+      }
+
+      if (section == null || line.isEmpty() || line.startsWith("#"))
+      {
+        continue;
+      }
+
+      String[] fields = split(line, separator);
+      if (section == MAIN_JAR)
+      {
+        if (fields.length < 3)
+        {
+          throw malformed(line);
+        }
+
+        mainJar = new ArtifactRecord(fields[0], fields[1], fields[2], null, null, null,
+            ArtifactUtils.isSnapshot(fields[2]), null);
+        mainJarName = fields.length > 3 ? fields[3] : null;
+        continue;
+      }
+
+      if (fields.length < 6)
+      {
+        throw malformed(line);
+      }
+
+      // written with StringBuilder.append(), so a missing scope is "null", and a missing classifier
+      // can't be told from an empty one
+      String classifier = fields[3].isEmpty() ? null : fields[3];
+      String scope = fields[5].equals("null") ? null : fields[5];
+
+      artifact = new ArtifactRecord(fields[0], fields[1], fields[2], classifier, fields[4], scope,
+          ArtifactUtils.isSnapshot(fields[2]), null);
+      name = field(fields, nameColumn);
+
+      String value = field(fields, sizeColumn);
+      try
+      {
+        size = value != null ? Long.parseLong(value) : -1;
+      }
+      catch (NumberFormatException e)
+      {
+        throw malformed(line);
+      }
+
+      path = field(fields, pathColumn);
+      checksum = field(fields, checksumColumn);
+
+      return true;
+    }
+
+    return false;
+  }
+
+  private void columns(String[] names)
+  {
+    nameColumn = -1;
+    sizeColumn = -1;
+    pathColumn = -1;
+    checksumColumn = -1;
+
+    for (int i = 0; i < names.length; i++)
+    {
+      switch (names[i].trim())
+      {
+      case "Name":
+        nameColumn = i;
+        break;
+      case "Size":
+        sizeColumn = i;
+        break;
+      case "Path":
+        pathColumn = i;
+        break;
+      case "SHA-256":
+        checksumColumn = i;
+        break;
+      }
+    }
+  }
+
+  /**
+   * The column's value, null when it's missing or empty
+   */
+  private static String field(String[] fields, int column)
+  {
+    return column >= 0 && column < fields.length && !fields[column].isEmpty() ? fields[column] : null;
+  }
+
+  static String[] split(String line, String separator)
+  {
+    List<String> fields = new ArrayList<>(8);
+
+    int start = 0;
+    int end;
+    while ((end = line.indexOf(separator, start)) >= 0)
+    {
+      fields.add(line.substring(start, end));
+      start = end + separator.length();
+    }
+    fields.add(line.substring(start));
+
+    return fields.toArray(new String[fields.size()]);
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    reader.close();
+  }
+}
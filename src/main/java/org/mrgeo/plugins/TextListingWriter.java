@@ -0,0 +1,92 @@
+package org.mrgeo.plugins;
+
+import java.io.IOException;
+
+/**
+ * The original listing format, a record per line with separated columns and commented section headers
+ */
+public class TextListingWriter implements ListingWriter
+{
+  private final RecordWriter writer;
+
+  private boolean fileDetails = false;
+  private boolean checksums = false;
+
+  public TextListingWriter(RecordWriter writer)
+  {
+    this.writer = writer;
+  }
+
+  @Override
+  public void writeMainJar(String groupId, String artifactId, String version, CharSequence name) throws IOException
+  {
+    writer.line("# Main Jar: ");
+    writer.line("#  GroupId | ArtifactId | Version | Name");
+
+    writer.field(groupId)
+        .field(artifactId)
+        .field(version)
+        .field(name);
+    writer.endRecord();
+  }
+
+  @Override
+  public void writeColumns(boolean fileDetails, boolean checksums) throws IOException
+  {
+    this.fileDetails = fileDetails;
+    this.checksums = checksums;
+
+    writer.line("\n\n# Dependencies: ");
+    StringBuilder columns = new StringBuilder("#  GroupId | ArtifactId | Version | Classifier | Type | Scope | Name");
+    if (fileDetails)
+    {
+      columns.append(" | Size | Path");
+    }
+    if (checksums)
+    {
+      columns.append(fileDetails ? " | SHA-256" : " | Size | SHA-256");
+    }
+    writer.line(columns.toString());
+  }
+
+  @Override
+  public void writeDependency(ArtifactRecord artifact, CharSequence name, long size, String path, String checksum)
+      throws IOException
+  {
+    writer.field(artifact.getGroupId())
+        .field(artifact.getArtifactId())
+        .field(artifact.getVersion())
+        .field(artifact.getClassifier() != null ? artifact.getClassifier() : "")
+        .field(artifact.getType())
+        .field().append(artifact.getScope());
+
+    writer.field(name);
+
+    if (fileDetails || checksums)
+    {
+      StringBuilder sizeField = writer.field();
+      if (size >= 0)
+      {
+        sizeField.append(size);
+      }
+    }
+
+    if (fileDetails)
+    {
+      writer.field(path != null ? path : "");
+    }
+
+    if (checksums)
+    {
+      writer.field(checksum != null ? checksum : "");
+    }
+
+    writer.endRecord();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    writer.close();
+  }
+}
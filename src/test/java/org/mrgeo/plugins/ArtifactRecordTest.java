@@ -0,0 +1,51 @@
+package org.mrgeo.plugins;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ArtifactRecordTest
+{
+  private static ArtifactRecord record(String artifactId, String scope, File file)
+  {
+    return new ArtifactRecord(new String("org.example"), artifactId, new String("1.0"), null, "jar", scope, false,
+        file);
+  }
+
+  @Test
+  public void naturalOrderMatchesEquals()
+  {
+    ArtifactRecord a = record("lib", "compile", new File("/repo/a/lib-1.0.jar"));
+    ArtifactRecord b = record("lib", "compile", new File("/other/lib-1.0-shaded.jar"));
+
+    // equal coordinates resolved to different files
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertEquals(0, a.compareTo(b));
+
+    ArtifactRecord test = record("lib", "test", new File("/repo/a/lib-1.0.jar"));
+    assertNotEquals(a, test);
+    assertNotEquals(0, a.compareTo(test));
+  }
+
+  @Test
+  public void listingOrderIsByName()
+  {
+    ArtifactRecord zeta = record("a-zeta", "compile", new File("/repo/zeta-1.0.jar"));
+    ArtifactRecord alpha = record("b-alpha", "compile", new File("/repo/alpha-1.0.jar"));
+
+    List<ArtifactRecord> sorted = new ArrayList<>(Arrays.asList(zeta, alpha));
+    Collections.sort(sorted, ArtifactRecord.BY_NAME);
+    assertEquals(Arrays.asList(alpha, zeta), sorted);
+
+    Collections.sort(sorted);
+    assertEquals(Arrays.asList(zeta, alpha), sorted);
+  }
+}
@@ -0,0 +1,125 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChecksumCacheTest
+{
+  private static final String ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+  private static final String ABD = "a52d159f262b2c6ddb724a61840befc36eb30c88877a4030b65cbe86298449c9";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File file(String name, String contents) throws IOException
+  {
+    File file = new File(folder.getRoot(), name);
+    Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  @Test
+  public void hash() throws IOException
+  {
+    assertEquals(ABC, ChecksumCache.hash(file("abc", "abc")));
+    assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        ChecksumCache.hash(file("empty", "")));
+  }
+
+  @Test
+  public void cachedUntilChanged() throws IOException
+  {
+    File cacheFile = new File(folder.getRoot(), "checksums.cache");
+    File abc = file("a.txt", "abc");
+
+    assertEquals(ABC, ChecksumCache.load(cacheFile, new SystemStreamLog()).checksums(Arrays.asList(abc)).get(abc));
+    assertTrue(cacheFile.isFile());
+
+    // a stale entry (same size and timestamp, other contents) shows the checksum came from the cache
+    long modified = abc.lastModified();
+    Files.write(abc.toPath(), "abd".getBytes(StandardCharsets.UTF_8));
+    assertTrue(abc.setLastModified(modified));
+
+    ChecksumCache cache = ChecksumCache.load(cacheFile, new SystemStreamLog());
+    assertEquals(ABC, cache.checksums(Arrays.asList(abc)).get(abc));
+
+    assertTrue(abc.setLastModified(modified - 60000));
+    assertEquals(ABD, cache.checksums(Arrays.asList(abc)).get(abc));
+  }
+
+  @Test
+  public void goneFilesAreDropped() throws IOException
+  {
+    File cacheFile = new File(folder.getRoot(), "checksums.cache");
+    File a = file("a.txt", "abc");
+    File b = file("b.txt", "abd");
+
+    ChecksumCache.load(cacheFile, new SystemStreamLog()).checksums(Arrays.asList(a, b));
+    assertTrue(b.delete());
+
+    ChecksumCache.load(cacheFile, new SystemStreamLog()).checksums(Arrays.asList(file("c.txt", "c")));
+
+    Map<String, ?> entries = ChecksumCache.read(Files.readAllBytes(cacheFile.toPath()));
+    assertTrue(entries.containsKey(a.getAbsolutePath()));
+    assertFalse(entries.containsKey(b.getAbsolutePath()));
+  }
+
+  @Test
+  public void corrupt() throws IOException
+  {
+    File cacheFile = new File(folder.getRoot(), "checksums.cache");
+    File a = file("a.txt", "abc");
+    ChecksumCache.load(cacheFile, new SystemStreamLog()).checksums(Arrays.asList(a, file("b.txt", "abd")));
+
+    byte[] bytes = Files.readAllBytes(cacheFile.toPath());
+    assertEquals(2, ChecksumCache.read(bytes).size());
+    assertEquals(bytes.length, ChecksumCache.write(ChecksumCache.read(bytes)).length);
+
+    for (int length : new int[]{0, 8, bytes.length / 2, bytes.length - 1})
+    {
+      try
+      {
+        ChecksumCache.read(Arrays.copyOf(bytes, length));
+        fail("read " + length + " of " + bytes.length + " bytes");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+
+    for (int i = 0; i < bytes.length; i++)
+    {
+      byte[] corrupt = bytes.clone();
+      corrupt[i] ^= 0x40;
+
+      try
+      {
+        ChecksumCache.read(corrupt);
+        fail("read with byte " + i + " flipped");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+
+    // a corrupt cache starts over
+    Files.write(cacheFile.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+    assertEquals(ABC, ChecksumCache.load(cacheFile, new SystemStreamLog()).checksums(Arrays.asList(a)).get(a));
+  }
+}
@@ -0,0 +1,106 @@
+package org.mrgeo.plugins;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyDiffTest
+{
+  private static ArtifactRecord artifact(String artifactId, String version, String classifier, String scope)
+  {
+    return new ArtifactRecord("org.example", artifactId, version, classifier, "jar", scope,
+        version.endsWith("-SNAPSHOT"), null);
+  }
+
+  @Test
+  public void same()
+  {
+    List<ArtifactRecord> artifacts = Arrays.asList(artifact("a", "1.0", null, "compile"),
+        artifact("b", "2.0", "tests", "test"));
+
+    List<ArtifactRecord> reversed = new ArrayList<>(artifacts);
+    Collections.reverse(reversed);
+
+    assertTrue(new DependencyDiff(artifacts, reversed).isEmpty());
+    assertTrue(new DependencyDiff(Collections.<ArtifactRecord>emptyList(),
+        Collections.<ArtifactRecord>emptyList()).isEmpty());
+  }
+
+  @Test
+  public void addedAndRemoved()
+  {
+    ArtifactRecord kept = artifact("kept", "1.0", null, "compile");
+    ArtifactRecord gone = artifact("gone", "1.0", null, "compile");
+    ArtifactRecord added = artifact("added", "1.0", null, "runtime");
+    ArtifactRecord classified = artifact("kept", "1.0", "sources", "compile");
+
+    DependencyDiff diff = new DependencyDiff(Arrays.asList(kept, gone), Arrays.asList(classified, added, kept));
+
+    assertEquals(Arrays.asList(added, classified), diff.getAdded());
+    assertEquals(Collections.singletonList(gone), diff.getRemoved());
+    assertTrue(diff.getChanged().isEmpty());
+
+    diff = new DependencyDiff(Collections.<ArtifactRecord>emptyList(), Arrays.asList(kept, gone));
+    assertEquals(Arrays.asList(gone, kept), diff.getAdded());
+    assertTrue(diff.getRemoved().isEmpty());
+  }
+
+  @Test
+  public void changed()
+  {
+    ArtifactRecord version = artifact("version", "1.0", null, "compile");
+    ArtifactRecord scope = artifact("scope", "1.0", null, "compile");
+    ArtifactRecord snapshot = artifact("snapshot", "1.0-SNAPSHOT", null, "compile");
+
+    ArtifactRecord newVersion = artifact("version", "1.1", null, "compile");
+    ArtifactRecord newScope = artifact("scope", "1.0", null, "provided");
+    ArtifactRecord released = artifact("snapshot", "1.0", null, "compile");
+
+    DependencyDiff diff = new DependencyDiff(Arrays.asList(version, scope, snapshot),
+        Arrays.asList(released, newScope, newVersion));
+
+    assertTrue(diff.getAdded().isEmpty());
+    assertTrue(diff.getRemoved().isEmpty());
+
+    // sorted on the key
+    List<ArtifactRecord[]> changed = diff.getChanged();
+    assertEquals(3, changed.size());
+    assertSame(scope, changed.get(0)[0]);
+    assertSame(newScope, changed.get(0)[1]);
+    assertSame(snapshot, changed.get(1)[0]);
+    assertSame(released, changed.get(1)[1]);
+    assertSame(version, changed.get(2)[0]);
+    assertSame(newVersion, changed.get(2)[1]);
+  }
+
+  @Test
+  public void emptyClassifier()
+  {
+    // a listing read back can have an empty classifier where the graph had none
+    DependencyDiff diff = new DependencyDiff(Collections.singletonList(artifact("a", "1.0", null, "compile")),
+        Collections.singletonList(artifact("a", "1.0", "", "compile")));
+
+    assertTrue(diff.isEmpty());
+  }
+
+  @Test
+  public void projectSkipped()
+  {
+    DependencyDiff diff = new DependencyDiff(Collections.singletonList(artifact("app", "1.0", null, null)),
+        Collections.singletonList(artifact("app", "1.1", null, null)));
+
+    assertTrue(diff.isEmpty());
+
+    diff = new DependencyDiff(Collections.<ArtifactRecord>emptyList(),
+        Collections.singletonList(artifact("app", "1.1", null, null)));
+
+    assertTrue(diff.isEmpty());
+  }
+}
@@ -0,0 +1,117 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mrgeo.plugins.GraphStoreTest.add;
+import static org.mrgeo.plugins.GraphStoreTest.artifact;
+import static org.mrgeo.plugins.GraphStoreTest.node;
+
+public class DependencyFootprintTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // app -> a -> common -> util
+  //     -> b -> common (a duplicate, its children left out)
+  //     -> c -> b
+  private static DependencyNode graph()
+  {
+    DependencyNode root = node(null, artifact("org.example", "app", "1.0", null));
+
+    DependencyNode a = node(root, artifact("org.example", "a", "1.0", "compile"));
+    DependencyNode common = node(a, artifact("org.example", "common", "1.0", "compile"));
+    add(common, node(common, artifact("org.example", "util", "1.0", "compile")));
+    add(a, common);
+    add(root, a);
+
+    DependencyNode b = node(root, artifact("org.example", "b", "1.0", "compile"));
+    add(b, node(b, artifact("org.example", "common", "1.0", "compile")));
+    add(root, b);
+
+    DependencyNode c = node(root, artifact("org.example", "c", "1.0", "test"));
+    add(c, node(c, artifact("org.example", "b", "1.0", "compile")));
+    add(root, c);
+
+    return root;
+  }
+
+  private static String members(DependencyFootprint.FootprintGraph graph, String artifactId)
+  {
+    BitSet[] members = graph.members();
+    for (int id = 0; id < graph.size(); id++)
+    {
+      if (graph.getArtifact(id).getArtifactId().equals(artifactId))
+      {
+        return members[id].toString();
+      }
+    }
+
+    throw new AssertionError("no " + artifactId);
+  }
+
+  @Test
+  public void sharedThroughDuplicates()
+  {
+    DependencyFootprint.FootprintGraph graph = new DependencyFootprint.FootprintGraph(graph(), null);
+
+    // the project itself isn't counted, nor are the duplicate nodes
+    assertEquals(5, graph.size());
+    assertEquals(3, graph.getDirect().size());
+
+    assertEquals("{0}", members(graph, "a"));
+    assertEquals("{1, 2}", members(graph, "b"));
+    assertEquals("{2}", members(graph, "c"));
+
+    // only linked below a, but b (and so c) needs it as well
+    assertEquals("{0, 1, 2}", members(graph, "common"));
+    assertEquals("{0, 1, 2}", members(graph, "util"));
+  }
+
+  @Test
+  public void filtered()
+  {
+    DependencyFilter filter = new DependencyFilter(null, "test", null, null);
+    DependencyFootprint.FootprintGraph graph = new DependencyFootprint.FootprintGraph(graph(), filter);
+
+    assertEquals(4, graph.size());
+    assertEquals(2, graph.getDirect().size());
+    assertEquals("{1}", members(graph, "b"));
+    assertEquals("{0, 1}", members(graph, "util"));
+  }
+
+  @Test
+  public void sizes() throws IOException
+  {
+    File repository = folder.newFolder("repository");
+    File dir = new File(repository, "org/example/a/1.0");
+    assertTrue(dir.mkdirs());
+    Files.write(new File(dir, "a-1.0.jar").toPath(), new byte[1234]);
+
+    LocalRepositoryIndex index = LocalRepositoryIndex.update(repository, new File(folder.getRoot(), "index"), new SystemStreamLog());
+
+    List<ArtifactRecord> artifacts = Arrays.asList(
+        ArtifactRecord.of(artifact("org.example", "a", "1.0", "compile")),
+        ArtifactRecord.of(artifact("org.example", "missing", "1.0", "compile")),
+        ArtifactRecord.of(artifact("org.example", "a", "1.0", "runtime")));
+
+    for (int threads : new int[]{1, 2, 8})
+    {
+      assertArrayEquals(new long[]{1234, 0, 1234},
+          DependencyFootprint.sizes(artifacts, index, threads, new SystemStreamLog()));
+    }
+  }
+}
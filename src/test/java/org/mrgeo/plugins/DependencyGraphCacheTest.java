@@ -0,0 +1,129 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DependencyGraphCacheTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static class CountingBuilder implements DependencyGraphBuilder
+  {
+    int builds = 0;
+
+    @Override
+    public DependencyNode buildDependencyGraph(MavenProject project, ArtifactFilter filter)
+    {
+      builds++;
+
+      DependencyNode root = GraphStoreTest.node(null, project.getArtifact());
+      GraphStoreTest.add(root, GraphStoreTest.node(root, GraphStoreTest.artifact("org.example", "lib", "1.0",
+          "compile")));
+      return root;
+    }
+
+    @Override
+    public DependencyNode buildDependencyGraph(MavenProject project, ArtifactFilter filter,
+        Collection<MavenProject> reactorProjects)
+    {
+      return buildDependencyGraph(project, filter);
+    }
+  }
+
+  private static MavenProject project(String artifactId, String... dependencies)
+  {
+    Model model = new Model();
+    model.setGroupId("org.example");
+    model.setArtifactId(artifactId);
+    model.setVersion("1.0");
+
+    for (String artifact : dependencies)
+    {
+      Dependency dep = new Dependency();
+      dep.setGroupId("org.example");
+      dep.setArtifactId(artifact);
+      dep.setVersion("1.0");
+      model.addDependency(dep);
+    }
+
+    MavenProject project = new MavenProject(model);
+    project.setArtifact(GraphStoreTest.artifact("org.example", artifactId, "1.0", null));
+    return project;
+  }
+
+  @Test
+  public void keyIgnoresModuleCoordinates()
+  {
+    assertEquals(DependencyGraphCache.makeKey(project("a", "lib")),
+        DependencyGraphCache.makeKey(project("b", "lib")));
+    assertNotEquals(DependencyGraphCache.makeKey(project("a", "lib")),
+        DependencyGraphCache.makeKey(project("a", "other")));
+  }
+
+  @Test
+  public void sharedGraphIsRerooted()
+  {
+    DependencyNode root = GraphStoreTest.node(null, GraphStoreTest.artifact("org.example", "a", "1.0", null));
+    GraphStoreTest.add(root, GraphStoreTest.node(root, GraphStoreTest.artifact("org.example", "lib", "1.0",
+        "compile")));
+
+    assertSame(root, DependencyGraphCache.reroot(root, project("a", "lib")));
+
+    DependencyNode rerooted = DependencyGraphCache.reroot(root, project("b", "lib"));
+    assertEquals("b", rerooted.getArtifact().getArtifactId());
+    assertNull(rerooted.getParent());
+    assertSame(root.getChildren(), rerooted.getChildren());
+  }
+
+  @Test
+  public void storedGraph() throws Exception
+  {
+    GraphStore store = new GraphStore(folder.newFolder("graphs"), 1024 * 1024, new SystemStreamLog());
+    CountingBuilder builder = new CountingBuilder();
+
+    new DependencyGraphCache().buildDependencyGraph(project("a", "lib"), builder, null, store);
+    DependencyNode root = new DependencyGraphCache().buildDependencyGraph(project("a", "lib"), builder, null, store);
+
+    // the second cache finds it in the store
+    assertEquals(1, builder.builds);
+    assertEquals("lib", root.getChildren().get(0).getArtifact().getArtifactId());
+
+    // a runtime or test dependency is part of the key too
+    MavenProject changed = project("a", "lib");
+    changed.setArtifacts(Collections.singleton(GraphStoreTest.artifact("org.example", "junit", "4.12", "test")));
+    new DependencyGraphCache().buildDependencyGraph(changed, builder, null, store);
+    assertEquals(2, builder.builds);
+  }
+
+  @Test
+  public void storeFailureStillBuilds() throws Exception
+  {
+    // a file where the store's directory should be, nothing can be saved
+    File notDirectory = folder.newFile("graphs");
+    GraphStore store = new GraphStore(notDirectory, 1024 * 1024, new SystemStreamLog());
+    CountingBuilder builder = new CountingBuilder();
+
+    DependencyNode root = new DependencyGraphCache().buildDependencyGraph(project("a", "lib"), builder, null, store);
+    assertEquals("a", root.getArtifact().getArtifactId());
+    assertEquals(1, root.getChildren().size());
+    assertEquals(1, builder.builds);
+  }
+}
@@ -0,0 +1,20 @@
+package org.mrgeo.plugins;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class DependencyResolverTest
+{
+  @Test
+  public void lockedResultsArentShared()
+  {
+    String plain = new DependencyResolver(null, null).getContextKey();
+
+    assertEquals(plain, new DependencyResolver(null, null).setLockFile(null).getContextKey());
+    assertNotEquals(plain, new DependencyResolver(null, null).setLockFile("dependencies.lock").getContextKey());
+    assertNotEquals(plain, new DependencyResolver(null, null).setParallel(true).getContextKey());
+    assertNotEquals(plain, new DependencyResolver(null, null).setMemoize(true).getContextKey());
+  }
+}
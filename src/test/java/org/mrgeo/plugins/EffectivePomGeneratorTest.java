@@ -0,0 +1,197 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EffectivePomGeneratorTest
+{
+  private static Dependency dependency(String groupId, String artifactId, String version, String classifier,
+      String type)
+  {
+    Dependency dep = new Dependency();
+    dep.setGroupId(groupId);
+    dep.setArtifactId(artifactId);
+    dep.setVersion(version);
+    dep.setClassifier(classifier);
+    if (type != null)
+    {
+      dep.setType(type);
+    }
+    return dep;
+  }
+
+  private static ArtifactRecord artifact(String groupId, String artifactId, String version, String classifier,
+      String scope)
+  {
+    return new ArtifactRecord(groupId, artifactId, version, classifier, "jar", scope, false, null);
+  }
+
+  private static List<String> coordinates(List<Dependency> dependencies)
+  {
+    List<String> coordinates = new ArrayList<>();
+    for (Dependency dep : dependencies)
+    {
+      coordinates.add(dep.getGroupId() + ":" + dep.getArtifactId() + ":" + dep.getVersion() +
+          (dep.getClassifier() == null ? "" : ":" + dep.getClassifier()) + ":" + dep.getScope());
+    }
+    return coordinates;
+  }
+
+  @Test
+  public void addsOnlyMissingDependencies()
+  {
+    List<Dependency> dependencies = new ArrayList<>(Arrays.asList(
+        dependency("org.example", "a", "1.0", null, null),
+        dependency("org.example", "b", "1.0", null, "jar")));
+
+    List<ArtifactRecord> artifacts = Arrays.asList(
+        artifact("org.example", "module", "1.0", null, null),
+        artifact("org.example", "a", "1.0", null, "compile"),
+        artifact("org.example", "b", "1.0", null, "compile"),
+        artifact("org.example", "c", "2.0", null, "runtime"),
+        artifact("org.example", "a", "1.0", "tests", "test"));
+
+    DependencyIndex index = EffectivePomGenerator.mergeDependencies(dependencies, artifacts);
+
+    // the pom's own dependencies are left as they were, the project itself isn't added
+    assertEquals(Arrays.asList(
+        "org.example:a:1.0:null",
+        "org.example:b:1.0:null",
+        "org.example:c:2.0:runtime",
+        "org.example:a:1.0:tests:test"), coordinates(dependencies));
+
+    for (ArtifactRecord artifact : artifacts.subList(1, artifacts.size()))
+    {
+      assertTrue(artifact.toString(), index.contains(artifact));
+    }
+    assertEquals(4, index.get("org.example", "1.0").size() + index.get("org.example", "2.0").size());
+  }
+
+  @Test
+  public void disjoint()
+  {
+    List<Dependency> dependencies = new ArrayList<>(Arrays.asList(
+        dependency("org.example", "a", "1.0", null, null)));
+
+    List<ArtifactRecord> artifacts = Arrays.asList(
+        artifact("commons-io", "commons-io", "2.4", "", "compile"),
+        artifact("junit", "junit", "4.12", null, "test"));
+
+    EffectivePomGenerator.mergeDependencies(dependencies, artifacts);
+
+    assertEquals(Arrays.asList(
+        "org.example:a:1.0:null",
+        "commons-io:commons-io:2.4:compile",
+        "junit:junit:4.12:test"), coordinates(dependencies));
+
+    Dependency added = dependencies.get(1);
+    assertEquals("jar", added.getType());
+    assertNull(added.getClassifier());
+  }
+
+  @Test
+  public void nothingToAdd()
+  {
+    List<Dependency> dependencies = new ArrayList<>(Arrays.asList(
+        dependency("org.example", "a", "1.0", null, null),
+        dependency("org.example", "b", "1.0", "tests", null)));
+
+    EffectivePomGenerator.mergeDependencies(dependencies, Arrays.asList(
+        artifact("org.example", "a", "1.1", null, "compile"),
+        artifact("org.example", "b", "1.0", "tests", "test")));
+
+    assertEquals(2, dependencies.size());
+  }
+
+  @Test
+  public void duplicateArtifactsAreAddedOnce()
+  {
+    List<Dependency> dependencies = new ArrayList<>();
+
+    EffectivePomGenerator.mergeDependencies(dependencies, Arrays.asList(
+        artifact("org.example", "a", "1.0", null, "compile"),
+        artifact("org.example", "a", "1.0", null, "runtime")));
+
+    assertEquals(Arrays.asList("org.example:a:1.0:compile"), coordinates(dependencies));
+  }
+
+  private static MavenProject parent(String groupId, String version, Dependency... managed)
+  {
+    Model model = new Model();
+    model.setGroupId(groupId);
+    model.setArtifactId("parent");
+    model.setVersion(version);
+    model.setPackaging("pom");
+
+    if (managed.length > 0)
+    {
+      DependencyManagement management = new DependencyManagement();
+      management.setDependencies(new ArrayList<>(Arrays.asList(managed)));
+      model.setDependencyManagement(management);
+    }
+
+    return new MavenProject(model);
+  }
+
+  @Test
+  public void releasedParentIsRewritten()
+  {
+    MavenProject parent = parent("org.example", "1.0-SNAPSHOT",
+        dependency("org.example", "a", "1.0-SNAPSHOT", null, null),
+        dependency("commons-io", "commons-io", "2.4", null, null));
+
+    EffectivePomGenerator.ParentRewrite rewrite =
+        new EffectivePomGenerator.ParentRewrite(parent, "org.example", "1.0-SNAPSHOT", "org.release", "1.0");
+
+    assertEquals("org.release", rewrite.reference.getGroupId());
+    assertEquals("parent", rewrite.reference.getArtifactId());
+    assertEquals("1.0", rewrite.reference.getVersion());
+
+    assertEquals(Arrays.asList("org.release:a:1.0:null", "commons-io:commons-io:2.4:null"),
+        coordinates(rewrite.dependencyManagement.getDependencies()));
+
+    // the project's own model is left alone
+    assertEquals(Arrays.asList("org.example:a:1.0-SNAPSHOT:null", "commons-io:commons-io:2.4:null"),
+        coordinates(parent.getModel().getDependencyManagement().getDependencies()));
+  }
+
+  @Test
+  public void externalParentIsKept()
+  {
+    MavenProject parent = parent("org.example", "7");
+
+    EffectivePomGenerator.ParentRewrite rewrite =
+        new EffectivePomGenerator.ParentRewrite(parent, "org.example", "1.0-SNAPSHOT", "org.release", "1.0");
+
+    assertEquals("org.example", rewrite.reference.getGroupId());
+    assertEquals("7", rewrite.reference.getVersion());
+    assertNull(rewrite.dependencyManagement);
+  }
+
+  @Test
+  public void parentRewriteIsShared()
+  {
+    EffectivePomGenerator generator = new EffectivePomGenerator(null, new SystemStreamLog());
+    MavenProject parent = parent("org.example", "1.0-SNAPSHOT");
+
+    EffectivePomGenerator.ParentRewrite first =
+        generator.getParent(parent, "org.example", "1.0-SNAPSHOT", "org.release", "1.0");
+
+    assertSame(first, generator.getParent(parent, "org.example", "1.0-SNAPSHOT", "org.release", "1.0"));
+    assertNotSame(first, generator.getParent(parent, "org.example", "1.0-SNAPSHOT", "org.release", "2.0"));
+  }
+}
@@ -0,0 +1,195 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphStoreTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  static Artifact artifact(String groupId, String artifactId, String version, String scope)
+  {
+    return new DefaultArtifact(groupId, artifactId, VersionRange.createFromVersion(version), scope, "jar", null,
+        new DefaultArtifactHandler("jar"), false);
+  }
+
+  static DependencyNode node(DependencyNode parent, Artifact artifact)
+  {
+    DefaultDependencyNode node = new DefaultDependencyNode(parent, artifact, null, null, null);
+    node.setChildren(new ArrayList<DependencyNode>());
+    return node;
+  }
+
+  static void add(DependencyNode parent, DependencyNode child)
+  {
+    ((DefaultDependencyNode) parent).getChildren().add(child);
+  }
+
+  private static DependencyNode graph()
+  {
+    DependencyNode root = node(null, artifact("org.example", "app", "1.0", null));
+
+    DependencyNode lib = node(root, artifact("org.example", "lib", "2.0-SNAPSHOT", "compile"));
+    lib.getArtifact().setFile(new File("/repo/org/example/lib/2.0-SNAPSHOT/lib-2.0-SNAPSHOT.jar"));
+    add(root, lib);
+
+    DefaultDependencyNode managed = new DefaultDependencyNode(lib, artifact("commons-io", "commons-io", "2.4",
+        "runtime"), "2.2", "compile", "[2.0,3.0)");
+    managed.setChildren(new ArrayList<DependencyNode>());
+    add(lib, managed);
+
+    add(root, node(root, artifact("junit", "junit", "4.12", "test")));
+
+    return root;
+  }
+
+  private static void assertSameGraph(DependencyNode expected, DependencyNode actual)
+  {
+    Artifact e = expected.getArtifact();
+    Artifact a = actual.getArtifact();
+
+    assertEquals(e.getGroupId(), a.getGroupId());
+    assertEquals(e.getArtifactId(), a.getArtifactId());
+    assertEquals(e.getVersion(), a.getVersion());
+    assertEquals(e.getClassifier(), a.getClassifier());
+    assertEquals(e.getType(), a.getType());
+    assertEquals(e.getScope(), a.getScope());
+    assertEquals(e.isOptional(), a.isOptional());
+    assertEquals(e.getFile(), a.getFile());
+    assertEquals(expected.getPremanagedVersion(), actual.getPremanagedVersion());
+    assertEquals(expected.getPremanagedScope(), actual.getPremanagedScope());
+    assertEquals(expected.getVersionConstraint(), actual.getVersionConstraint());
+
+    assertEquals(expected.getChildren().size(), actual.getChildren().size());
+    for (int i = 0; i < expected.getChildren().size(); i++)
+    {
+      assertTrue(actual.getChildren().get(i).getParent() == actual);
+      assertSameGraph(expected.getChildren().get(i), actual.getChildren().get(i));
+    }
+  }
+
+  @Test
+  public void roundTrip() throws IOException
+  {
+    DependencyNode root = graph();
+    assertSameGraph(root, GraphStore.read(GraphStore.write(root)));
+  }
+
+  @Test
+  public void saveAndLoad() throws IOException
+  {
+    GraphStore store = new GraphStore(folder.getRoot(), 1024 * 1024, new SystemStreamLog());
+
+    assertNull(store.load("missing"));
+
+    DependencyNode root = graph();
+    store.save("key", root);
+    assertSameGraph(root, store.load("key"));
+  }
+
+  @Test
+  public void truncated() throws IOException
+  {
+    byte[] bytes = GraphStore.write(graph());
+
+    for (int length : new int[]{0, 4, 11, bytes.length / 2, bytes.length - 1})
+    {
+      try
+      {
+        GraphStore.read(Arrays.copyOf(bytes, length));
+        fail("read " + length + " of " + bytes.length + " bytes");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void corrupt() throws IOException
+  {
+    byte[] bytes = GraphStore.write(graph());
+
+    for (int i = 0; i < bytes.length; i++)
+    {
+      byte[] corrupt = bytes.clone();
+      corrupt[i] ^= 0x40;
+
+      try
+      {
+        GraphStore.read(corrupt);
+        fail("read with byte " + i + " flipped");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void corruptFileIsDiscarded() throws IOException
+  {
+    GraphStore store = new GraphStore(folder.getRoot(), 1024 * 1024, new SystemStreamLog());
+    store.save("key", graph());
+
+    File file = new File(folder.getRoot(), "key.graph");
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+
+    assertNull(store.load("key"));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws IOException
+  {
+    DependencyNode root = graph();
+    long size = GraphStore.write(root).length;
+
+    // room for two graphs
+    GraphStore store = new GraphStore(folder.getRoot(), size * 2 + size / 2, new SystemStreamLog());
+
+    List<File> files = new ArrayList<>();
+    for (String key : new String[]{"a", "b"})
+    {
+      store.save(key, root);
+      File file = new File(folder.getRoot(), key + ".graph");
+      files.add(file);
+    }
+    files.get(0).setLastModified(System.currentTimeMillis() - 20000);
+    files.get(1).setLastModified(System.currentTimeMillis() - 10000);
+
+    // "a" is used again, so "b" is the oldest when "c" comes in
+    assertNotNull(store.load("a"));
+    store.save("c", root);
+
+    assertNotNull(store.load("a"));
+    assertNull(store.load("b"));
+    assertNotNull(store.load("c"));
+  }
+}
@@ -0,0 +1,78 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.mrgeo.plugins.GraphStoreTest.add;
+import static org.mrgeo.plugins.GraphStoreTest.artifact;
+import static org.mrgeo.plugins.GraphStoreTest.node;
+
+public class IndexClassesTest
+{
+  private static MavenProject project()
+  {
+    Model model = new Model();
+    model.setGroupId("org.example");
+    model.setArtifactId("app");
+    model.setVersion("1.0");
+
+    return new MavenProject(model);
+  }
+
+  @Test
+  public void graphOrder()
+  {
+    // app -> a -> b (runtime)
+    //     -> c (runtime) -> b
+    //     -> d
+    DependencyNode root = node(null, artifact("org.example", "app", "1.0", null));
+    DependencyNode a = node(root, artifact("org.example", "a", "1.0", "compile"));
+    add(a, node(a, artifact("org.example", "b", "1.0", "runtime")));
+    add(root, a);
+    DependencyNode c = node(root, artifact("org.example", "c", "1.0", "runtime"));
+    add(c, node(c, artifact("org.example", "b", "1.0", "runtime")));
+    add(root, c);
+    add(root, node(root, artifact("org.example", "d", "1.0", "compile")));
+
+    // the compile classpath only, runtime artifacts would have gone last
+    Set<Artifact> artifacts = new LinkedHashSet<>();
+    artifacts.add(artifact("org.example", "d", "1.0", "compile"));
+    artifacts.add(artifact("org.example", "a", "1.0", "compile"));
+    MavenProject project = project();
+    project.setArtifacts(artifacts);
+
+    Map<String, Integer> order = IndexClasses.classpathOrder(project,
+        new ResolvedDependencies(root, Collections.<ArtifactRecord>emptyList(), 0, false));
+
+    assertEquals(4, order.size());
+    assertEquals(0, (int) order.get("org.example:a:jar:"));
+    assertEquals(1, (int) order.get("org.example:b:jar:"));
+    assertEquals(2, (int) order.get("org.example:c:jar:"));
+    assertEquals(3, (int) order.get("org.example:d:jar:"));
+  }
+
+  @Test
+  public void lockedOrder()
+  {
+    Set<Artifact> artifacts = new LinkedHashSet<>();
+    artifacts.add(artifact("org.example", "d", "1.0", "runtime"));
+    artifacts.add(artifact("org.example", "a", "1.0", "compile"));
+    MavenProject project = project();
+    project.setArtifacts(artifacts);
+
+    Map<String, Integer> order = IndexClasses.classpathOrder(project,
+        new ResolvedDependencies(null, Collections.<ArtifactRecord>emptyList(), 0, true));
+
+    assertEquals(0, (int) order.get("org.example:d:jar:"));
+    assertEquals(1, (int) order.get("org.example:a:jar:"));
+  }
+}
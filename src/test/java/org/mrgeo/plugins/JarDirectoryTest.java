@@ -0,0 +1,213 @@
+package org.mrgeo.plugins;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JarDirectoryTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  File jar(String name, String... entries) throws IOException
+  {
+    File jar = new File(folder.getRoot(), name);
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar)))
+    {
+      for (String entry : entries)
+      {
+        zip.putNextEntry(new ZipEntry(entry));
+        if (!entry.endsWith("/"))
+        {
+          zip.write(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        zip.closeEntry();
+      }
+    }
+
+    return jar;
+  }
+
+  static List<String> names(JarDirectory directory)
+  {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < directory.size(); i++)
+    {
+      names.add(directory.getName(i));
+    }
+    return names;
+  }
+
+  @Test
+  public void modularJars() throws IOException
+  {
+    File a = jar("a.jar", "module-info.class", "META-INF/versions/9/module-info.class", "org/", "org/a/",
+        "org/a/package-info.class", "org/a/A.class", "org/a/mypackage-info.class");
+    File b = jar("b.jar", "module-info.class", "org/b/package-info.class", "org/b/B.class");
+
+    Map<File, JarDirectory> directories = new HashMap<>();
+    directories.put(a, JarDirectory.read(a));
+    directories.put(b, JarDirectory.read(b));
+
+    assertEquals(Arrays.asList("org/a/A", "org/a/mypackage-info"), names(directories.get(a)));
+    assertEquals(Arrays.asList("org/b/B"), names(directories.get(b)));
+
+    // the descriptors would otherwise put both jars in the default package, split across them
+    Map<String, List<Integer>> packages = IndexClasses.packages(Arrays.asList(a, b), directories);
+    assertEquals(Arrays.asList("org/a", "org/b"), new ArrayList<>(packages.keySet()));
+  }
+
+  // the classes as java.util.zip sees them
+  private static void assertSameClasses(File jar, JarDirectory directory) throws IOException
+  {
+    List<String> names = new ArrayList<>();
+    List<Long> crcs = new ArrayList<>();
+    List<Long> sizes = new ArrayList<>();
+    try (ZipFile zip = new ZipFile(jar))
+    {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements())
+      {
+        ZipEntry entry = entries.nextElement();
+        if (entry.getName().endsWith(".class") && !entry.getName().startsWith("META-INF/"))
+        {
+          names.add(entry.getName().substring(0, entry.getName().length() - ".class".length()));
+          crcs.add(entry.getCrc());
+          sizes.add(entry.getSize());
+        }
+      }
+    }
+
+    assertEquals(names, names(directory));
+    for (int i = 0; i < directory.size(); i++)
+    {
+      assertEquals((long) crcs.get(i), directory.getCrc(i) & 0xffffffffL);
+      assertEquals((long) sizes.get(i), directory.getSize(i));
+    }
+  }
+
+  @Test
+  public void matchesZipFile() throws IOException
+  {
+    File jar = jar("a.jar", "META-INF/MANIFEST.MF", "META-INF/versions/11/org/a/A.class", "org/a/A.class",
+        "org/a/A$Inner.class", "org/a/b/B.class", "org/a/resource.properties", "C.class",
+        "org/\u00e9t\u00e9/D.class");
+    assertSameClasses(jar, JarDirectory.read(jar));
+  }
+
+  @Test
+  public void commentAndPrefix() throws IOException
+  {
+    File jar = new File(folder.getRoot(), "commented.jar");
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar)))
+    {
+      zip.putNextEntry(new ZipEntry("org/a/A.class"));
+      zip.write(new byte[100]);
+      zip.setComment(new String(new char[1000]).replace('\0', 'x'));
+    }
+    assertSameClasses(jar, JarDirectory.read(jar));
+
+    // e.g. a launcher script in front of the jar
+    byte[] bytes = Files.readAllBytes(jar.toPath());
+    byte[] prefixed = new byte[bytes.length + 64];
+    System.arraycopy(bytes, 0, prefixed, 64, bytes.length);
+    File script = new File(folder.getRoot(), "prefixed.jar");
+    Files.write(script.toPath(), prefixed);
+
+    assertEquals(Arrays.asList("org/a/A"), names(JarDirectory.read(script)));
+  }
+
+  @Test
+  public void zip64() throws IOException
+  {
+    // more entries than the end record can count
+    File jar = new File(folder.getRoot(), "large.jar");
+    try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar))))
+    {
+      for (int i = 0; i < 70000; i++)
+      {
+        zip.putNextEntry(new ZipEntry("org/a/C" + i + ".class"));
+        zip.closeEntry();
+      }
+    }
+
+    JarDirectory directory = JarDirectory.read(jar);
+    assertEquals(70000, directory.size());
+    assertEquals("org/a/C69999", directory.getName(69999));
+  }
+
+  @Test
+  public void truncated() throws IOException
+  {
+    File jar = jar("a.jar", "org/a/A.class", "org/a/B.class", "org/a/C.class");
+    byte[] bytes = Files.readAllBytes(jar.toPath());
+
+    File cut = new File(folder.getRoot(), "cut.jar");
+    for (int length : new int[]{0, 4, 21, bytes.length / 2, bytes.length - 1})
+    {
+      Files.write(cut.toPath(), Arrays.copyOf(bytes, length));
+      try
+      {
+        JarDirectory.read(cut);
+        fail("read " + length + " of " + bytes.length + " bytes");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+
+    // the entries themselves are never read, only the directory at the end
+    Files.write(cut.toPath(), Arrays.copyOfRange(bytes, 10, bytes.length));
+    assertEquals(Arrays.asList("org/a/A", "org/a/B", "org/a/C"), names(JarDirectory.read(cut)));
+  }
+
+  @Test
+  public void corrupt() throws IOException
+  {
+    File jar = jar("a.jar", "org/a/A.class", "org/a/B.class", "org/a/C.class");
+    byte[] bytes = Files.readAllBytes(jar.toPath());
+
+    // the directory has no checksum, a flipped byte can go unnoticed, but it never reads past the
+    // directory or fails other than with an IOException
+    File corrupt = new File(folder.getRoot(), "corrupt.jar");
+    for (int i = 0; i < bytes.length; i++)
+    {
+      byte[] flipped = bytes.clone();
+      flipped[i] ^= 0x40;
+      Files.write(corrupt.toPath(), flipped);
+
+      try
+      {
+        JarDirectory.read(corrupt);
+      }
+      catch (IOException e)
+      {
+        // fine
+      }
+      catch (RuntimeException e)
+      {
+        throw new AssertionError("byte " + i + " flipped", e);
+      }
+    }
+  }
+}
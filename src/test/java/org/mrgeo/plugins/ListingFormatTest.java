@@ -0,0 +1,287 @@
+package org.mrgeo.plugins;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ListingFormatTest
+{
+  private static final String SHA = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static class Dependency
+  {
+    final ArtifactRecord artifact;
+    final String name;
+    final long size;
+    final String path;
+    final String checksum;
+
+    Dependency(ArtifactRecord artifact, String name, long size, String path, String checksum)
+    {
+      this.artifact = artifact;
+      this.name = name;
+      this.size = size;
+      this.path = path;
+      this.checksum = checksum;
+    }
+  }
+
+  private static List<Dependency> dependencies()
+  {
+    return Arrays.asList(
+        new Dependency(new ArtifactRecord("org.example", "a", "1.0", null, "jar", "compile", false, null),
+            "a-1.0.jar", 1234, "/repo/org/example/a/1.0/a-1.0.jar", SHA),
+        new Dependency(new ArtifactRecord("org.example", "b", "2.0-SNAPSHOT", "tests", "test-jar", "test", true,
+            null), "b-2.0-SNAPSHOT-tests.jar", 0, "/repo/a \"quoted\" \\ path\t.jar", null),
+        new Dependency(new ArtifactRecord("org.other", "c", "3", null, "pom", "runtime", false, null),
+            "c-3.pom", -1, null, null));
+  }
+
+  private File write(ListingFormat format, String separator, boolean compress, boolean fileDetails,
+      boolean checksums) throws IOException
+  {
+    File file = new File(folder.getRoot(), format + "-" + compress + "-" + fileDetails + "-" + checksums);
+    OutputFile output = new OutputFile(file);
+
+    ListingWriter writer = format.open(output, separator, compress);
+    try
+    {
+      writer.writeMainJar("org.example", "app", "1.0-SNAPSHOT", "app-1.0-SNAPSHOT.jar");
+      writer.writeColumns(fileDetails, checksums);
+      for (Dependency dependency : dependencies())
+      {
+        writer.writeDependency(dependency.artifact, dependency.name, dependency.size, dependency.path,
+            dependency.checksum);
+      }
+    }
+    finally
+    {
+      writer.close();
+    }
+    output.commit();
+
+    return file;
+  }
+
+  private static void assertRead(File file, String separator, boolean binary, boolean fileDetails,
+      boolean checksums) throws IOException
+  {
+    try (ListingReader reader = ListingReader.open(file, separator))
+    {
+      for (Dependency expected : dependencies())
+      {
+        assertTrue(reader.next());
+
+        assertEquals("org.example:app:1.0-SNAPSHOT", reader.getMainJar().getGroupId() + ":" +
+            reader.getMainJar().getArtifactId() + ":" + reader.getMainJar().getVersion());
+        assertTrue(reader.getMainJar().isSnapshot());
+        assertEquals("app-1.0-SNAPSHOT.jar", reader.getMainJarName());
+
+        ArtifactRecord artifact = reader.getArtifact();
+        assertEquals(expected.artifact, artifact);
+        assertEquals(expected.artifact.getClassifier(), artifact.getClassifier());
+        assertEquals(expected.artifact.getScope(), artifact.getScope());
+        assertEquals(expected.artifact.isSnapshot(), artifact.isSnapshot());
+        assertNull(artifact.getFile());
+
+        assertEquals(expected.name, reader.getName());
+        // the binary format keeps whatever it's given, the others only the columns
+        assertEquals(fileDetails || checksums || binary ? expected.size : -1, reader.getSize());
+        assertEquals(fileDetails || binary ? expected.path : null, reader.getPath());
+        assertEquals(checksums || binary ? expected.checksum : null, reader.getChecksum());
+      }
+
+      assertFalse(reader.next());
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void roundTrip() throws IOException
+  {
+    for (ListingFormat format : ListingFormat.values())
+    {
+      for (boolean compress : new boolean[]{false, true})
+      {
+        for (boolean fileDetails : new boolean[]{false, true})
+        {
+          for (boolean checksums : new boolean[]{false, true})
+          {
+            File file = write(format, "|", compress, fileDetails, checksums);
+            assertRead(file, "|", format == ListingFormat.BINARY, fileDetails, checksums);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void textSeparator() throws IOException
+  {
+    File file = write(ListingFormat.TEXT, ",", false, true, true);
+    assertRead(file, ",", false, true, true);
+  }
+
+  @Test
+  public void olderTextListing() throws IOException
+  {
+    // before the Name column was announced, and with a "null" scope
+    File file = folder.newFile("dependencies.properties");
+    Files.write(file.toPath(), ("# Main Jar: \norg.example|app|1.0|app-1.0.jar\n\n\n# Dependencies: \n" +
+        "org.example|a|1.0||jar|null|a-1.0.jar\n").getBytes(StandardCharsets.UTF_8));
+
+    try (ListingReader reader = ListingReader.open(file, "|"))
+    {
+      assertTrue(reader.next());
+      assertEquals("a", reader.getArtifact().getArtifactId());
+      assertNull(reader.getArtifact().getClassifier());
+      assertNull(reader.getArtifact().getScope());
+      assertEquals("a-1.0.jar", reader.getName());
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void readsInOrder() throws IOException
+  {
+    List<ArtifactRecord> expected = new ArrayList<>();
+    for (Dependency dependency : dependencies())
+    {
+      expected.add(dependency.artifact);
+    }
+
+    for (ListingFormat format : ListingFormat.values())
+    {
+      assertEquals(expected, ListingReader.read(write(format, "|", false, false, false), "|"));
+    }
+  }
+
+  @Test
+  public void formatNames()
+  {
+    assertEquals(ListingFormat.BINARY, ListingFormat.of(" Binary "));
+    try
+    {
+      ListingFormat.of("xml");
+      fail("parsed xml");
+    }
+    catch (IllegalArgumentException e)
+    {
+      assertTrue(e.getMessage(), e.getMessage().contains("[text, binary, json]"));
+    }
+  }
+
+  private static void assertUnreadable(File file) throws IOException
+  {
+    try (ListingReader reader = ListingReader.open(file, "|"))
+    {
+      while (reader.next())
+      {
+        // read it all
+      }
+      fail("read " + file.length() + " bytes of " + file.getName());
+    }
+    catch (IOException e)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void truncated() throws IOException
+  {
+    File cut = new File(folder.getRoot(), "cut");
+
+    // binary listings end with an END record, anything short of it is noticed, as is a cut gzip stream
+    for (ListingFormat format : ListingFormat.values())
+    {
+      for (boolean compress : new boolean[]{false, true})
+      {
+        if (format != ListingFormat.BINARY && !compress)
+        {
+          continue;
+        }
+
+        // a binary listing is read up to its END record, not to the gzip trailer (the last 8 bytes)
+        byte[] bytes = Files.readAllBytes(write(format, "|", compress, true, true).toPath());
+        int end = compress ? bytes.length - 8 : bytes.length;
+        for (int length = 4; length < end; length += Math.max(1, bytes.length / 50))
+        {
+          Files.write(cut.toPath(), Arrays.copyOf(bytes, length));
+          assertUnreadable(cut);
+        }
+      }
+    }
+
+    // JSON and text lines cut short
+    Files.write(cut.toPath(), "{\"record\":\"dependency\",\"groupId\":\"org.ex".getBytes(StandardCharsets.UTF_8));
+    assertUnreadable(cut);
+
+    Files.write(cut.toPath(), "# Dependencies: \norg.example|a|1.0\n".getBytes(StandardCharsets.UTF_8));
+    assertUnreadable(cut);
+  }
+
+  @Test
+  public void corrupt() throws IOException
+  {
+    File corrupt = new File(folder.getRoot(), "corrupt");
+
+    Files.write(corrupt.toPath(), ("{\"record\":\"dependency\",\"size\":\"12\"}\n").getBytes(StandardCharsets.UTF_8));
+    try (ListingReader reader = ListingReader.open(corrupt, "|"))
+    {
+      // a string where a number goes is left unknown
+      assertTrue(reader.next());
+      assertEquals(-1, reader.getSize());
+    }
+
+    Files.write(corrupt.toPath(), ("{\"record\":\"dependency\",\"name\":12}\n").getBytes(StandardCharsets.UTF_8));
+    assertUnreadable(corrupt);
+
+    Files.write(corrupt.toPath(), ("# Dependencies: \n#  GroupId | ArtifactId | Version | Classifier | Type | " +
+        "Scope | Name | Size\norg.example|a|1.0||jar|compile|a-1.0.jar|big\n").getBytes(StandardCharsets.UTF_8));
+    assertUnreadable(corrupt);
+
+    // the binary format has no checksum, a flipped byte can go unnoticed, but only ever fails with an
+    // IOException
+    byte[] bytes = Files.readAllBytes(write(ListingFormat.BINARY, "|", false, true, true).toPath());
+    for (int i = 4; i < bytes.length; i++)
+    {
+      byte[] flipped = bytes.clone();
+      flipped[i] ^= 0x40;
+      Files.write(corrupt.toPath(), flipped);
+
+      try (ListingReader reader = ListingReader.open(corrupt, "|"))
+      {
+        while (reader.next())
+        {
+          reader.getArtifact();
+        }
+      }
+      catch (IOException e)
+      {
+        // fine
+      }
+      catch (RuntimeException e)
+      {
+        throw new AssertionError("byte " + i + " flipped", e);
+      }
+    }
+  }
+}
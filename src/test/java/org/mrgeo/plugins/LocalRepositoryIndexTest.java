@@ -0,0 +1,125 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocalRepositoryIndexTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final ArtifactRecord LIB =
+      new ArtifactRecord("org.example", "lib", "1.0", null, "jar", "compile", false, null);
+
+  private File jar(File repository, int size) throws IOException
+  {
+    File dir = new File(repository, "org/example/lib/1.0");
+    Files.createDirectories(dir.toPath());
+
+    File jar = new File(dir, "lib-1.0.jar");
+    Files.write(jar.toPath(), new byte[size]);
+    Files.write(new File(dir, "lib-1.0.jar.sha1").toPath(), new byte[40]);
+    return jar;
+  }
+
+  @Test
+  public void findsArtifacts() throws IOException
+  {
+    File repository = folder.newFolder("repository");
+    File jar = jar(repository, 10);
+
+    LocalRepositoryIndex index =
+        LocalRepositoryIndex.update(repository, new File(folder.getRoot(), "index"), new SystemStreamLog());
+
+    LocalRepositoryIndex.Entry entry = index.find(LIB);
+    assertNotNull(entry);
+    assertEquals(jar, entry.getFile());
+    assertEquals(10, entry.getSize());
+
+    assertNull(index.find(new ArtifactRecord("org.example", "lib", "1.0", "sources", "jar", null, false, null)));
+    assertNull(index.find(new ArtifactRecord("org.example", "lib", "2.0", null, "jar", null, false, null)));
+  }
+
+  @Test
+  public void overwrittenInPlace() throws IOException
+  {
+    File repository = folder.newFolder("repository");
+    File jar = jar(repository, 10);
+    File indexFile = new File(folder.getRoot(), "index");
+
+    LocalRepositoryIndex.update(repository, indexFile, new SystemStreamLog());
+
+    // same name, so the directory keeps its timestamp
+    long directoryModified = jar.getParentFile().lastModified();
+    Files.write(jar.toPath(), new byte[20]);
+    assertTrue(jar.getParentFile().setLastModified(directoryModified));
+
+    LocalRepositoryIndex index = LocalRepositoryIndex.update(repository, indexFile, new SystemStreamLog());
+    assertEquals(20, index.find(LIB).getSize());
+    assertEquals(20, index.find(jar).getSize());
+
+    assertTrue(jar.delete());
+    assertTrue(jar.getParentFile().setLastModified(directoryModified));
+
+    index = LocalRepositoryIndex.update(repository, indexFile, new SystemStreamLog());
+    assertNull(index.find(LIB));
+  }
+
+  @Test
+  public void corrupt() throws IOException
+  {
+    File repository = folder.newFolder("repository");
+    jar(repository, 10);
+    File indexFile = new File(folder.getRoot(), "index");
+
+    LocalRepositoryIndex.update(repository, indexFile, new SystemStreamLog());
+    byte[] bytes = Files.readAllBytes(indexFile.toPath());
+    LocalRepositoryIndex.read(bytes);
+
+    for (int length : new int[]{0, 8, bytes.length / 2, bytes.length - 1})
+    {
+      try
+      {
+        LocalRepositoryIndex.read(Arrays.copyOf(bytes, length));
+        fail("read " + length + " of " + bytes.length + " bytes");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+
+    for (int i = 0; i < bytes.length; i++)
+    {
+      byte[] corrupt = bytes.clone();
+      corrupt[i] ^= 0x40;
+
+      try
+      {
+        LocalRepositoryIndex.read(corrupt);
+        fail("read with byte " + i + " flipped");
+      }
+      catch (IOException e)
+      {
+        // expected
+      }
+    }
+
+    // a corrupt index is rebuilt
+    Files.write(indexFile.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+    assertEquals(10, LocalRepositoryIndex.update(repository, indexFile, new SystemStreamLog()).find(LIB).getSize());
+  }
+}
@@ -0,0 +1,171 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LockFileTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<ArtifactRecord> artifacts(File repository)
+  {
+    return Arrays.asList(
+        new ArtifactRecord("org.example", "a", "1.0", null, "jar", "compile", false,
+            new File(repository, "org/example/a/1.0/a-1.0.jar")),
+        new ArtifactRecord("org.example", "b", "2.0-SNAPSHOT", "", "jar", "", true,
+            new File(repository, "org/example/b/2.0-SNAPSHOT/b-2.0-SNAPSHOT.jar")),
+        new ArtifactRecord("org.example", "c", "1.0", "tests", "test-jar", null, false, null),
+        new ArtifactRecord("org.other", "d", "3", null, "jar", "runtime", false, new File("/elsewhere/d-3.jar")));
+  }
+
+  private static void assertSameRecords(List<ArtifactRecord> expected, List<ArtifactRecord> actual)
+  {
+    assertEquals(expected, actual);
+    for (int i = 0; i < expected.size(); i++)
+    {
+      ArtifactRecord e = expected.get(i);
+      ArtifactRecord a = actual.get(i);
+
+      assertEquals(e.getClassifier(), a.getClassifier());
+      assertEquals(e.getScope(), a.getScope());
+      assertEquals(e.isSnapshot(), a.isSnapshot());
+      assertEquals(e.getFile() == null ? null : e.getFile().getAbsoluteFile(), a.getFile());
+    }
+  }
+
+  @Test
+  public void roundTrip() throws IOException
+  {
+    File repository = folder.newFolder("repository");
+    File file = new File(folder.getRoot(), "dependencies.lock");
+
+    List<ArtifactRecord> artifacts = artifacts(repository);
+    assertTrue(LockFile.write(file, "hash", artifacts, repository));
+    assertTrue(LockFile.isLockFile(file));
+
+    // repository paths are kept relative, so the file can be shared
+    String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    assertFalse(contents.contains(repository.getAbsolutePath()));
+    assertTrue(contents.contains("org/example/a/1.0/a-1.0.jar"));
+
+    assertSameRecords(artifacts, LockFile.read(file, "hash", repository));
+    assertSameRecords(artifacts, LockFile.read(file, null, repository));
+
+    // unchanged contents leave the file alone
+    assertFalse(LockFile.write(file, "hash", artifacts, repository));
+  }
+
+  @Test
+  public void staleOrMissing() throws IOException
+  {
+    File file = new File(folder.getRoot(), "dependencies.lock");
+    assertNull(LockFile.read(file, "hash", null));
+
+    LockFile.write(file, "hash", Collections.<ArtifactRecord>emptyList(), null);
+    assertEquals(0, LockFile.read(file, "hash", null).size());
+    assertNull(LockFile.read(file, "other", null));
+  }
+
+  @Test
+  public void truncated() throws IOException
+  {
+    File repository = folder.newFolder("repository");
+    File file = new File(folder.getRoot(), "dependencies.lock");
+    LockFile.write(file, "hash", artifacts(repository), repository);
+
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    String contents = new String(bytes, StandardCharsets.UTF_8);
+
+    // cut in the middle of the last record
+    int last = contents.lastIndexOf("org.other");
+    Files.write(file.toPath(), Arrays.copyOf(bytes, last + 12));
+    try
+    {
+      LockFile.read(file, "hash", repository);
+      fail("read a truncated lockfile");
+    }
+    catch (IOException e)
+    {
+      // expected
+    }
+
+    // cut before the hash, there's nothing locked
+    Files.write(file.toPath(), Arrays.copyOf(bytes, contents.indexOf("hash")));
+    assertNull(LockFile.read(file, "hash", repository));
+  }
+
+  @Test
+  public void notALockFile() throws IOException
+  {
+    File file = folder.newFile("dependencies.properties");
+    Files.write(file.toPath(), new byte[]{0x1f, (byte) 0x8b, 8, 0});
+    assertFalse(LockFile.isLockFile(file));
+
+    Files.write(file.toPath(), new byte[0]);
+    assertFalse(LockFile.isLockFile(file));
+  }
+
+  @Test
+  public void snapshotHashIgnoresTimestamps() throws IOException
+  {
+    File jar = folder.newFile("b-2.0-SNAPSHOT.jar");
+    Files.write(jar.toPath(), new byte[]{1, 2, 3});
+
+    Artifact artifact = GraphStoreTest.artifact("org.example", "b", "2.0-SNAPSHOT", "compile");
+    artifact.setFile(jar);
+    List<Artifact> artifacts = Collections.singletonList(artifact);
+
+    String hash = new Fingerprint().addArtifacts(artifacts).getValue();
+
+    assertTrue(jar.setLastModified(jar.lastModified() - 60000));
+    assertEquals(hash, new Fingerprint().addArtifacts(artifacts).getValue());
+
+    Files.write(jar.toPath(), new byte[]{1, 2, 4});
+    assertFalse(hash.equals(new Fingerprint().addArtifacts(artifacts).getValue()));
+  }
+
+  @Test
+  public void inputHashCoversEveryScope() throws IOException
+  {
+    Model model = new Model();
+    model.setGroupId("org.example");
+    model.setArtifactId("app");
+    model.setVersion("1.0");
+    MavenProject project = new MavenProject(model);
+
+    Set<Artifact> artifacts = new LinkedHashSet<>();
+    artifacts.add(GraphStoreTest.artifact("org.example", "a", "1.0", "compile"));
+    project.setArtifacts(artifacts);
+    String hash = LockFile.inputHash(project, null);
+
+    for (String scope : new String[]{"runtime", "provided", "test"})
+    {
+      Set<Artifact> more = new LinkedHashSet<>(artifacts);
+      more.add(GraphStoreTest.artifact("org.example", "b", "1.0", scope));
+      project.setArtifacts(more);
+
+      assertFalse(scope, hash.equals(LockFile.inputHash(project, null)));
+    }
+  }
+}
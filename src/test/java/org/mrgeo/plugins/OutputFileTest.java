@@ -0,0 +1,80 @@
+package org.mrgeo.plugins;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputFileTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static void write(OutputFile output, byte[] bytes) throws IOException
+  {
+    try (OutputStream os = output.open())
+    {
+      os.write(bytes);
+    }
+  }
+
+  @Test
+  public void commitReplacesOnlyChangedContents() throws IOException
+  {
+    File file = new File(folder.getRoot(), "out.txt");
+
+    OutputFile output = new OutputFile(file);
+    write(output, new byte[]{1, 2, 3});
+    assertTrue(output.commit());
+    output.discard();
+
+    output = new OutputFile(file);
+    write(output, new byte[]{1, 2, 3});
+    assertFalse(output.commit());
+
+    output = new OutputFile(file);
+    write(output, new byte[]{1, 2, 4});
+    assertTrue(output.commit());
+
+    assertArrayEquals(new byte[]{1, 2, 4}, Files.readAllBytes(file.toPath()));
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void discardLeavesTheOutputAlone() throws IOException
+  {
+    File file = new File(folder.getRoot(), "out.txt");
+    Files.write(file.toPath(), new byte[]{1});
+
+    OutputFile output = new OutputFile(file);
+    write(output, new byte[]{2});
+    output.discard();
+
+    assertArrayEquals(new byte[]{1}, Files.readAllBytes(file.toPath()));
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void fingerprint() throws IOException
+  {
+    File file = new File(folder.getRoot(), "out.txt");
+    OutputFile output = new OutputFile(file);
+    assertFalse(output.isUpToDate("abc"));
+
+    write(output, new byte[]{1});
+    output.commit();
+    output.saveFingerprint("abc");
+
+    assertTrue(output.isUpToDate("abc"));
+    assertFalse(output.isUpToDate("abd"));
+  }
+}
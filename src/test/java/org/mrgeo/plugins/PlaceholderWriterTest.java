@@ -0,0 +1,112 @@
+package org.mrgeo.plugins;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlaceholderWriterTest
+{
+  private static final String[] PATTERNS = {"/work/app/target", "/work/app", "${x}"};
+  private static final String[] REPLACEMENTS = {"${project.build.directory}", "${basedir}", ""};
+
+  // what the writer should produce: at each position, the first pattern that matches
+  private static String replace(String text)
+  {
+    StringBuilder result = new StringBuilder();
+    int i = 0;
+    while (i < text.length())
+    {
+      int match = -1;
+      for (int p = 0; p < PATTERNS.length && match < 0; p++)
+      {
+        if (text.startsWith(PATTERNS[p], i))
+        {
+          match = p;
+        }
+      }
+
+      if (match < 0)
+      {
+        result.append(text.charAt(i++));
+      }
+      else
+      {
+        result.append(REPLACEMENTS[match]);
+        i += PATTERNS[match].length();
+      }
+    }
+    return result.toString();
+  }
+
+  private static String write(String text, int chunk) throws IOException
+  {
+    StringWriter out = new StringWriter();
+    PlaceholderWriter writer = new PlaceholderWriter(out, PATTERNS, REPLACEMENTS);
+    for (int i = 0; i < text.length(); i += chunk)
+    {
+      if (chunk == 1)
+      {
+        writer.write(text.charAt(i));
+      }
+      else
+      {
+        writer.write(text, i, Math.min(chunk, text.length() - i));
+      }
+    }
+    writer.close();
+
+    assertEquals(out.toString().length(), writer.getLength());
+    return out.toString();
+  }
+
+  @Test
+  public void replaces() throws IOException
+  {
+    String text = "<dir>/work/app/target/classes</dir><base>/work/app</base>${x}/work/ap${x";
+    assertEquals("<dir>${project.build.directory}/classes</dir><base>${basedir}</base>/work/ap${x",
+        write(text, text.length()));
+  }
+
+  @Test
+  public void partialPatternAtTheEnd() throws IOException
+  {
+    assertEquals("/work/ap", write("/work/ap", 3));
+    assertEquals("${basedir}/tar", write("/work/app/tar", 1));
+    assertEquals("", write("", 1));
+  }
+
+  @Test
+  public void acrossBufferBoundaries() throws IOException
+  {
+    Random random = new Random(42);
+    String[] pieces = {"/work/app/target", "/work/app", "/work/", "${x}", "${", "/", "<a>", "text "};
+
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 50000)
+    {
+      text.append(pieces[random.nextInt(pieces.length)]);
+    }
+
+    String expected = replace(text.toString());
+    for (int chunk : new int[]{1, 7, 4096, 8191, 8192, 8193, 50000})
+    {
+      assertEquals("chunk " + chunk, expected, write(text.toString(), chunk));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingReplacement()
+  {
+    new PlaceholderWriter(new StringWriter(), new String[]{"a", "b"}, new String[]{"c"});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyPattern()
+  {
+    new PlaceholderWriter(new StringWriter(), new String[]{""}, new String[]{"c"});
+  }
+}
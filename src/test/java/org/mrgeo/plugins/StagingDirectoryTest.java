@@ -0,0 +1,74 @@
+package org.mrgeo.plugins;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StagingDirectoryTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static File file(File dir, String name, byte[] contents) throws IOException
+  {
+    File file = new File(dir, name);
+    Files.write(file.toPath(), contents);
+    return file;
+  }
+
+  @Test
+  public void stagesIncrementally() throws IOException
+  {
+    File sources = folder.newFolder("sources");
+    File lib = new File(folder.getRoot(), "lib");
+    File cacheFile = new File(folder.getRoot(), "checksums.cache");
+
+    Map<String, File> files = new LinkedHashMap<>();
+    files.put("a.jar", file(sources, "a.jar", new byte[]{1, 2, 3}));
+    files.put("b.jar", file(sources, "b.jar", new byte[]{4, 5, 6}));
+    files.put("c.jar", file(sources, "c.jar", new byte[]{7}));
+
+    StagingDirectory staging = new StagingDirectory(lib, ChecksumCache.load(cacheFile, new SystemStreamLog()), false);
+    staging.stage(files, 2, StagingDirectory.extensions(files.keySet()));
+    assertEquals(3, staging.getCopied());
+
+    // a: same contents, new timestamp; b: same size, new contents; c: gone
+    File a = files.get("a.jar");
+    assertTrue(a.setLastModified(a.lastModified() - 60000));
+    file(sources, "b.jar", new byte[]{4, 5, 7});
+    assertTrue(files.get("b.jar").setLastModified(a.lastModified() - 60000));
+    files.remove("c.jar");
+    File stale = file(lib, "old.txt", new byte[0]);
+
+    staging = new StagingDirectory(lib, ChecksumCache.load(cacheFile, new SystemStreamLog()), false);
+    staging.stage(files, 2, StagingDirectory.extensions(files.keySet()));
+
+    assertEquals(1, staging.getUnchanged());
+    assertEquals(1, staging.getCopied());
+    assertEquals(1, staging.getDeleted());
+
+    assertEquals(a.lastModified(), new File(lib, "a.jar").lastModified());
+    assertArrayEquals(new byte[]{4, 5, 7}, Files.readAllBytes(new File(lib, "b.jar").toPath()));
+    assertFalse(new File(lib, "c.jar").exists());
+    // not a staged extension
+    assertTrue(stale.exists());
+
+    // only the sources go in the persistent cache
+    String cache = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.ISO_8859_1);
+    assertTrue(cache.contains(sources.getAbsolutePath()));
+    assertFalse(cache.contains(lib.getAbsolutePath()));
+  }
+}